@@ -0,0 +1,308 @@
+/*
+ *    Copyright 2021 Lero4ka16
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.github.lero4ka16.ef4j.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates {@code EventRegistrar} for each class with {@code @EventHandler} methods,
+ * so {@code EventBus#subscribe} doesn't need reflection and runtime class spinning.
+ * Each handler is a named nested class, lambdas aren't used to avoid their linkage at runtime.
+ * <p>
+ * Local, anonymous and private classes are skipped, they are still handled using reflection.
+ *
+ * @author lero4ka16
+ */
+@SupportedAnnotationTypes(EventHandlerProcessor.EVENT_HANDLER)
+public final class EventHandlerProcessor extends AbstractProcessor {
+
+    static final String PACKAGE = "com.github.lero4ka16.ef4j";
+
+    static final String EVENT_HANDLER = PACKAGE + ".EventHandler";
+    static final String EVENT = PACKAGE + ".Event";
+
+    static final String REGISTRAR_SUFFIX = "$$EventRegistrar";
+
+    private final Set<String> generated = new HashSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        TypeElement eventHandler = processingEnv.getElementUtils().getTypeElement(EVENT_HANDLER);
+
+        if (eventHandler == null) {
+            return false;
+        }
+
+        Set<TypeElement> listeners = new LinkedHashSet<>();
+
+        for (Element element : roundEnv.getElementsAnnotatedWith(eventHandler)) {
+            if (element.getKind() == ElementKind.METHOD) {
+                listeners.add((TypeElement) element.getEnclosingElement());
+            }
+        }
+
+        for (TypeElement listener : listeners) {
+            if (!isSupported(listener)) {
+                continue;
+            }
+
+            String binaryName = processingEnv.getElementUtils().getBinaryName(listener).toString();
+
+            if (generated.add(binaryName)) {
+                generate(listener, binaryName);
+            }
+        }
+
+        return false;
+    }
+
+    private boolean isSupported(TypeElement listener) {
+        for (Element element = listener; element instanceof TypeElement; element = element.getEnclosingElement()) {
+            TypeElement type = (TypeElement) element;
+
+            if (type.getNestingKind() == NestingKind.LOCAL || type.getNestingKind() == NestingKind.ANONYMOUS) {
+                return false;
+            }
+
+            if (type.getModifiers().contains(Modifier.PRIVATE)) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                        "Registrar can't be generated for private class, reflection will be used", listener);
+
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void generate(TypeElement listener, String binaryName) {
+        PackageElement pkg = processingEnv.getElementUtils().getPackageOf(listener);
+
+        String packageName = pkg.getQualifiedName().toString();
+        String registrarName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1))
+                + REGISTRAR_SUFFIX;
+
+        List<Handler> handlers = new ArrayList<>();
+
+        TypeMirror eventType = processingEnv.getTypeUtils().erasure(
+                processingEnv.getElementUtils().getTypeElement(EVENT).asType());
+
+        for (ExecutableElement method : ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(listener))) {
+            AnnotationMirror annotation = findEventHandler(method);
+
+            if (annotation == null) {
+                continue;
+            }
+
+            if (!method.getModifiers().contains(Modifier.PUBLIC)) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                        "Handler isn't public and will be ignored", method);
+
+                continue;
+            }
+
+            if (method.getModifiers().contains(Modifier.STATIC)) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "Handler can't be static", method);
+
+                continue;
+            }
+
+            if (method.getReturnType().getKind() != TypeKind.VOID) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "Handler must return void", method);
+
+                continue;
+            }
+
+            List<? extends VariableElement> params = method.getParameters();
+            TypeMirror param = params.size() == 1 ? params.get(0).asType() : null;
+
+            if (param == null || param.getKind() != TypeKind.DECLARED
+                    || !(isEventInterface((DeclaredType) param)
+                    || processingEnv.getTypeUtils().isAssignable(param, eventType))) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "Wrong parameter types", method);
+
+                continue;
+            }
+
+            if (!((DeclaredType) param).getTypeArguments().isEmpty()) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "Generic as parameter is illegal", method);
+
+                continue;
+            }
+
+            handlers.add(new Handler(method, annotation, processingEnv.getTypeUtils().erasure(param).toString()));
+        }
+
+        String listenerType = processingEnv.getTypeUtils().erasure(listener.asType()).toString();
+
+        try (Writer writer = processingEnv.getFiler()
+                .createSourceFile(packageName.isEmpty() ? registrarName : packageName + "." + registrarName, listener)
+                .openWriter()) {
+            if (!packageName.isEmpty()) {
+                writer.write("package " + packageName + ";\n\n");
+            }
+
+            writer.write("@SuppressWarnings({\"rawtypes\", \"unchecked\"})\n");
+            writer.write("public final class " + registrarName
+                    + " implements " + PACKAGE + ".EventRegistrar<" + listenerType + "> {\n\n");
+            writer.write("    @Override\n");
+            writer.write("    public void register(" + PACKAGE + ".EventRegistrar.Handlers<"
+                    + listenerType + "> handlers) {\n");
+
+            for (int i = 0; i < handlers.size(); i++) {
+                Handler handler = handlers.get(i);
+
+                writer.write("        handlers.add(" + handler.type + ".class, "
+                        + PACKAGE + ".EventPriority." + handler.priority + ", "
+                        + handler.concurrent + ", " + handler.ignoreCancelled + ", new Handler" + i + "(null));\n");
+            }
+
+            writer.write("    }\n");
+
+            // named classes instead of lambdas, so nothing is spun at runtime;
+            // instance without the listener is the factory of bound instances
+            for (int i = 0; i < handlers.size(); i++) {
+                Handler handler = handlers.get(i);
+
+                writer.write("\n");
+                writer.write("    private static final class Handler" + i
+                        + " implements java.util.function.Function<" + listenerType + ", "
+                        + PACKAGE + ".EventListener<?>>, " + PACKAGE + ".EventListener {\n\n");
+                writer.write("        private final " + listenerType + " listener;\n\n");
+                writer.write("        private Handler" + i + "(" + listenerType + " listener) {\n");
+                writer.write("            this.listener = listener;\n");
+                writer.write("        }\n\n");
+                writer.write("        @Override\n");
+                writer.write("        public " + PACKAGE + ".EventListener<?> apply(" + listenerType
+                        + " listener) {\n");
+                writer.write("            return new Handler" + i + "(listener);\n");
+                writer.write("        }\n\n");
+                writer.write("        @Override\n");
+                writer.write("        public void handle(" + EVENT + " event) {\n");
+                writer.write("            listener." + handler.name + "((" + handler.type + ") event);\n");
+                writer.write("        }\n");
+                writer.write("    }\n");
+            }
+
+            writer.write("\n}\n");
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Unable to generate registrar: " + e.getMessage(), listener);
+        }
+    }
+
+    /**
+     * Same as in {@code EventListenerDescriptor}, interfaces of the JDK are not events
+     */
+    private static boolean isEventInterface(DeclaredType type) {
+        if (type.asElement().getKind() != ElementKind.INTERFACE) {
+            return false;
+        }
+
+        String name = ((TypeElement) type.asElement()).getQualifiedName().toString();
+        return !name.startsWith("java.") && !name.startsWith("javax.") && !name.startsWith("jdk.");
+    }
+
+    private AnnotationMirror findEventHandler(ExecutableElement method) {
+        for (AnnotationMirror annotation : method.getAnnotationMirrors()) {
+            TypeElement type = (TypeElement) annotation.getAnnotationType().asElement();
+
+            if (type.getQualifiedName().contentEquals(EVENT_HANDLER)) {
+                return annotation;
+            }
+        }
+
+        return null;
+    }
+
+    private final class Handler {
+
+        private final String name;
+        private final String type;
+
+        private final String priority;
+        private final boolean concurrent;
+        private final boolean ignoreCancelled;
+
+        private Handler(ExecutableElement method, AnnotationMirror annotation, String type) {
+            this.name = method.getSimpleName().toString();
+            this.type = type;
+
+            String priority = null;
+            boolean concurrent = false;
+            boolean ignoreCancelled = false;
+
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                    : processingEnv.getElementUtils().getElementValuesWithDefaults(annotation).entrySet()) {
+                Object value = entry.getValue().getValue();
+
+                switch (entry.getKey().getSimpleName().toString()) {
+                    case "value":
+                        priority = ((VariableElement) value).getSimpleName().toString();
+                        break;
+                    case "concurrent":
+                        concurrent = (Boolean) value;
+                        break;
+                    case "ignoreCancelled":
+                        ignoreCancelled = (Boolean) value;
+                        break;
+                }
+            }
+
+            this.priority = priority;
+            this.concurrent = concurrent;
+            this.ignoreCancelled = ignoreCancelled;
+        }
+    }
+
+}
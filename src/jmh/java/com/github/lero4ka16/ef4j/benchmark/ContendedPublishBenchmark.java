@@ -0,0 +1,85 @@
+/*
+ *    Copyright 2021 Lero4ka16
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.github.lero4ka16.ef4j.benchmark;
+
+import com.github.lero4ka16.ef4j.EventBus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Several threads publishing into the same bus, {@code SimpleEventBus}
+ * is not thread safe and therefore isn't measured here.
+ *
+ * @author lero4ka16
+ */
+@Threads(4)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ContendedPublishBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class BusState {
+
+        @Param({"SYNC", "CONCURRENT", "READ_WRITE"})
+        public EventBusType busType;
+
+        @Param({"1", "8"})
+        public int subscribers;
+
+        private EventBus bus;
+
+        @Setup
+        public void setup() {
+            bus = busType.create();
+
+            for (int i = 0; i < subscribers; i++) {
+                bus.subscribe(new BenchmarkListener());
+            }
+        }
+
+    }
+
+    @State(Scope.Thread)
+    public static class EventState {
+
+        private final BenchmarkEvent event = new BenchmarkEvent();
+
+    }
+
+    @Benchmark
+    public int publish(BusState bus, EventState event) {
+        bus.bus.publish(event.event);
+        return event.event.counter;
+    }
+
+}
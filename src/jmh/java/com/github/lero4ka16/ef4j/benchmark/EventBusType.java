@@ -0,0 +1,57 @@
+/*
+ *    Copyright 2021 Lero4ka16
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.github.lero4ka16.ef4j.benchmark;
+
+import com.github.lero4ka16.ef4j.ConcurrentEventBus;
+import com.github.lero4ka16.ef4j.EventBus;
+import com.github.lero4ka16.ef4j.ReadWriteEventBus;
+import com.github.lero4ka16.ef4j.SimpleEventBus;
+import com.github.lero4ka16.ef4j.SyncEventBus;
+
+/**
+ * @author lero4ka16
+ */
+public enum EventBusType {
+    SIMPLE {
+        @Override
+        public EventBus create() {
+            return new SimpleEventBus();
+        }
+    },
+    SYNC {
+        @Override
+        public EventBus create() {
+            return new SyncEventBus();
+        }
+    },
+    CONCURRENT {
+        @Override
+        public EventBus create() {
+            return new ConcurrentEventBus();
+        }
+    },
+    READ_WRITE {
+        @Override
+        public EventBus create() {
+            return new ReadWriteEventBus();
+        }
+    };
+
+    public abstract EventBus create();
+
+}
@@ -0,0 +1,87 @@
+/*
+ *    Copyright 2021 Lero4ka16
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.github.lero4ka16.ef4j.benchmark;
+
+import com.github.lero4ka16.ef4j.EventBus;
+import com.github.lero4ka16.ef4j.EventObjectSubscription;
+import com.github.lero4ka16.ef4j.EventPriority;
+import com.github.lero4ka16.ef4j.EventSubscription;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@code subscribe(Object)} and {@code subscribe(Class, EventListener, ...)}
+ * immediately followed by {@code unsubscribe},
+ * with a number of long-living listeners already registered for the same event.
+ *
+ * @author lero4ka16
+ */
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SubscribeBenchmark {
+
+    @Param({"SIMPLE", "SYNC", "CONCURRENT"})
+    public EventBusType busType;
+
+    @Param({"0", "64"})
+    public int subscribers;
+
+    private EventBus bus;
+
+    @Setup
+    public void setup() {
+        bus = busType.create();
+
+        for (int i = 0; i < subscribers; i++) {
+            bus.subscribe(new BenchmarkListener());
+        }
+    }
+
+    @Benchmark
+    public EventObjectSubscription subscribeUnsubscribe() {
+        EventObjectSubscription subscription = bus.subscribe(new BenchmarkListener());
+        subscription.unsubscribe();
+
+        return subscription;
+    }
+
+    @Benchmark
+    public EventSubscription<BenchmarkEvent> subscribeUnsubscribeLambda() {
+        EventSubscription<BenchmarkEvent> subscription = bus.subscribe(BenchmarkEvent.class,
+                event -> event.counter++, EventPriority.NORMAL, false);
+        subscription.unsubscribe();
+
+        return subscription;
+    }
+
+}
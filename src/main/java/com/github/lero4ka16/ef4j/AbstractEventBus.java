@@ -16,20 +16,24 @@
 
 package com.github.lero4ka16.ef4j;
 
-import java.lang.invoke.CallSite;
-import java.lang.invoke.LambdaMetafactory;
-import java.lang.invoke.MethodHandle;
-import java.lang.invoke.MethodHandles;
-import java.lang.invoke.MethodType;
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
-import java.lang.reflect.ParameterizedType;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 /**
@@ -45,14 +49,119 @@ public abstract class AbstractEventBus implements EventBus {
 
     private final Supplier<Set<EventSubscription<?>>> byNamespaceSetFactory;
 
+    private final EventLockMode lockMode;
+    private final Object[] lockStripes;
+
+    private final Executor concurrentExecutor;
+
+    private final EventBusMetrics metrics;
+    private final EventFaultPolicy faultPolicy;
+
+    /**
+     * Dispatch tables by concrete event class, all changes of subscriptions
+     * are made while holding this map's monitor
+     */
+    private final Map<Class<?>, EventDispatcher<?>> dispatchers = new ConcurrentHashMap<>();
+
+    /**
+     * Queue of collected weak listeners, created on the first {@link #subscribeWeak}
+     */
+    private volatile ReferenceQueue<Object> staleListeners;
+
     public AbstractEventBus(boolean isSynchronized,
                             Map<EventNamespace, Set<EventSubscription<?>>> byNamespace,
                             Map<Type, EventSubscriptionStorage<?>> byEvent,
                             Supplier<Set<EventSubscription<?>>> byNamespaceSetFactory) {
+        this(isSynchronized, byNamespace, byEvent, byNamespaceSetFactory, EventLockMode.BUS, null);
+    }
+
+    /**
+     * @param lockMode           lock used for handlers, that are not {@link EventHandler#concurrent()},
+     *                           ignored if bus is synchronized
+     * @param concurrentExecutor executor for {@link EventHandler#concurrent()} handlers, they are started
+     *                           in order of their priority and joined before {@link EventPriority#MONITOR}
+     *                           handlers, or {@code null} to execute them in the publishing thread
+     */
+    public AbstractEventBus(boolean isSynchronized,
+                            Map<EventNamespace, Set<EventSubscription<?>>> byNamespace,
+                            Map<Type, EventSubscriptionStorage<?>> byEvent,
+                            Supplier<Set<EventSubscription<?>>> byNamespaceSetFactory,
+                            EventLockMode lockMode,
+                            Executor concurrentExecutor) {
+        this(isSynchronized, byNamespace, byEvent, byNamespaceSetFactory, lockMode, concurrentExecutor, null);
+    }
+
+    /**
+     * @param metrics metrics of the bus, or {@code null} to disable them
+     */
+    public AbstractEventBus(boolean isSynchronized,
+                            Map<EventNamespace, Set<EventSubscription<?>>> byNamespace,
+                            Map<Type, EventSubscriptionStorage<?>> byEvent,
+                            Supplier<Set<EventSubscription<?>>> byNamespaceSetFactory,
+                            EventLockMode lockMode,
+                            Executor concurrentExecutor,
+                            EventBusMetrics metrics) {
+        this(isSynchronized, byNamespace, byEvent, byNamespaceSetFactory, lockMode, concurrentExecutor, metrics,
+                null);
+    }
+
+    /**
+     * @param faultPolicy policy for failing and slow handlers, or {@code null} to call
+     *                    all handlers and throw their exceptions to the publisher
+     */
+    public AbstractEventBus(boolean isSynchronized,
+                            Map<EventNamespace, Set<EventSubscription<?>>> byNamespace,
+                            Map<Type, EventSubscriptionStorage<?>> byEvent,
+                            Supplier<Set<EventSubscription<?>>> byNamespaceSetFactory,
+                            EventLockMode lockMode,
+                            Executor concurrentExecutor,
+                            EventBusMetrics metrics,
+                            EventFaultPolicy faultPolicy) {
         this.isSynchronized = isSynchronized;
         this.byNamespace = byNamespace;
         this.byEvent = byEvent;
         this.byNamespaceSetFactory = byNamespaceSetFactory;
+        this.lockMode = lockMode;
+        this.lockStripes = lockMode == EventLockMode.STRIPED ? createLockStripes() : null;
+        this.concurrentExecutor = concurrentExecutor;
+        this.metrics = metrics;
+        this.faultPolicy = faultPolicy;
+    }
+
+    /**
+     * @return metrics of the bus, or {@code null} if they are disabled
+     */
+    public EventBusMetrics getMetrics() {
+        return metrics;
+    }
+
+    private static Object[] createLockStripes() {
+        int size = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4 - 1) << 1;
+        Object[] stripes = new Object[size];
+
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new Object();
+        }
+
+        return stripes;
+    }
+
+    private EventListener<?> lock(Object listener, EventListener<?> createdListener) {
+        switch (lockMode) {
+            case LISTENER:
+                return new EventListener.Sync(listener, createdListener);
+            case SUBSCRIPTION:
+                return new EventListener.Sync(new Object(), createdListener);
+            case STRIPED:
+                int hash = System.identityHashCode(listener);
+                hash ^= hash >>> 16;
+
+                return new EventListener.Sync(lockStripes[hash & (lockStripes.length - 1)], createdListener);
+            case CONFINED:
+                return new EventListener.Confined(createdListener);
+            default:
+                return new EventListener.Sync(this, createdListener);
+        }
     }
 
     @Override
@@ -62,17 +171,51 @@ public abstract class AbstractEventBus implements EventBus {
     }
 
     private void removeByEvent(EventSubscription<?> subscription) {
-        EventSubscriptionStorage subscriptions = byEvent.get(subscription.getType());
+        synchronized (dispatchers) {
+            EventSubscriptionStorage subscriptions = byEvent.get(subscription.getType());
 
-        if (subscriptions == null) {
-            return;
+            if (subscriptions == null) {
+                return;
+            }
+
+            subscriptions.remove(subscription);
+
+            if (subscriptions.getSize() == 0) {
+                byEvent.remove(subscription.getType());
+            }
+
+            if (metrics != null) {
+                metrics.unregister(subscription);
+            }
+
+            updateDispatchers(subscription.getType());
         }
+    }
 
-        subscriptions.remove(subscription);
+    private void updateDispatchers(Class<?> subscriptionType) {
+        for (EventDispatcher<?> dispatcher : dispatchers.values()) {
+            if (dispatcher.isAffectedBy(subscriptionType)) {
+                dispatcher.update(byEvent);
+            }
+        }
+    }
+
+    private <E extends Event> EventDispatcher<E> getDispatcher(Class<E> type) {
+        EventDispatcher<E> dispatcher = (EventDispatcher<E>) dispatchers.get(type);
+
+        if (dispatcher == null) {
+            synchronized (dispatchers) {
+                dispatcher = (EventDispatcher<E>) dispatchers.computeIfAbsent(type, $ -> {
+                    EventDispatcher<?> created = new EventDispatcher<>(type,
+                            metrics != null ? metrics.getPublishCounter(type) : null);
+                    created.update(byEvent);
 
-        if (subscriptions.getSize() == 0) {
-            byEvent.remove(subscription.getType());
+                    return created;
+                });
+            }
         }
+
+        return dispatcher;
     }
 
     private void removeByNamespace(EventSubscription<?> subscription) {
@@ -94,40 +237,187 @@ public abstract class AbstractEventBus implements EventBus {
         Set<EventSubscription<?>> listeners = byNamespace.remove(namespace);
 
         if (listeners != null) {
-            for (EventSubscription<?> subscription : listeners) {
-                removeByEvent(subscription);
-            }
+            commit(Collections.emptyList(), new ArrayList<>(listeners));
         }
     }
 
     @Override
     public void unsubscribeAll() {
-        byEvent.clear();
-        byNamespace.clear();
+        synchronized (dispatchers) {
+            byEvent.clear();
+            byNamespace.clear();
+
+            if (metrics != null) {
+                metrics.unregisterAll();
+            }
+
+            for (EventDispatcher<?> dispatcher : dispatchers.values()) {
+                dispatcher.update(byEvent);
+            }
+        }
     }
 
     @Override
     public void publish(Event event) {
-        EventSubscriptionStorage subscriptions = byEvent.get(event.getClass());
+        dispatch(event, getDispatcher(event.getClass()));
+    }
+
+    /**
+     * Reads the dispatch table of the given type, if the type was already published,
+     * otherwise looks up subscriptions of the type and of all its superclasses and interfaces,
+     * dispatch table isn't created for the query
+     */
+    @Override
+    public boolean hasSubscribers(Class<? extends Event> type) {
+        if (staleListeners != null) {
+            expungeStaleListeners();
+        }
+
+        EventDispatcher<?> dispatcher = dispatchers.get(type);
+
+        if (dispatcher != null) {
+            return dispatcher.getSnapshot().getSize() != 0;
+        }
+
+        synchronized (dispatchers) {
+            return EventDispatcher.hasSubscriptions(type, byEvent);
+        }
+    }
+
+    @Override
+    public <E extends Event> void publish(Class<E> type, Supplier<E> supplier) {
+        if (staleListeners != null) {
+            expungeStaleListeners();
+        }
+
+        EventDispatcher<E> dispatcher = getDispatcher(type);
+
+        if (dispatcher.getSnapshot().getSize() == 0) {
+            return;
+        }
+
+        E event = supplier.get();
+
+        if (event.getClass() == type) {
+            publish(event, dispatcher);
+        } else {
+            publish(event);
+        }
+    }
+
+    /**
+     * Returns publisher bound to the dispatch table of the given type, it stays valid
+     * for the whole lifetime of the bus and doesn't look up subscriptions on each publish
+     */
+    @Override
+    public <E extends Event> EventPublisher<E> publisher(Class<E> type) {
+        return new DispatcherPublisher<>(this, getDispatcher(type));
+    }
+
+    /**
+     * Publishes the event using the already resolved dispatcher, buses that override
+     * {@link #publish(Event)} should override this method too
+     */
+    void publish(Event event, EventDispatcher<?> dispatcher) {
+        dispatch(event, dispatcher);
+    }
+
+    @Override
+    public void publishAll(Event... events) {
+        publishAll(Arrays.asList(events));
+    }
+
+    /**
+     * Publishes events one after another, subscriptions of each event type
+     * are resolved only once per call
+     */
+    @Override
+    public void publishAll(Collection<? extends Event> events) {
+        Class<?> lastType = null;
+        EventDispatcher<?> lastDispatcher = null;
+
+        Map<Class<?>, EventDispatcher<?>> resolved = null;
+
+        for (Event event : events) {
+            Class<? extends Event> type = event.getClass();
+
+            if (type != lastType) {
+                if (lastType != null) {
+                    if (resolved == null) {
+                        resolved = new IdentityHashMap<>();
+                    }
+
+                    resolved.put(lastType, lastDispatcher);
+                }
+
+                EventDispatcher<?> dispatcher = resolved != null ? resolved.get(type) : null;
+
+                lastType = type;
+                lastDispatcher = dispatcher != null ? dispatcher : getDispatcher(type);
+            }
+
+            dispatch(event, lastDispatcher);
+        }
+    }
+
+    private void dispatch(Event event, EventDispatcher<?> dispatcher) {
+        event.ensureNotRecycled();
+
+        if (staleListeners != null) {
+            expungeStaleListeners();
+        }
+
+        LongAdder publishCounter = dispatcher.getPublishCounter();
+
+        if (publishCounter != null) {
+            publishCounter.increment();
+        }
 
-        if (subscriptions != null) {
+        EventSubscriptionStorage.Snapshot subscriptions = dispatcher.getSnapshot();
+        subscriptions = subscriptions.route(event);
+
+        Object trace = EventTracer.INSTANCE.beginPublish();
+
+        if (concurrentExecutor != null && subscriptions.hasConcurrent()) {
+            subscriptions.publish(event, concurrentExecutor);
+        } else {
             subscriptions.publish(event);
         }
 
         event.postPublish(this);
 
-        if (subscriptions != null) {
-            subscriptions.postPublish(event);
+        subscriptions.postPublish(event);
+
+        if (trace != null) {
+            EventTracer.INSTANCE.endPublish(trace, event, subscriptions.getSize());
+        }
+
+        event.release();
+    }
+
+    private void prepare(EventSubscription<?> subscription) {
+        if (metrics != null) {
+            subscription.metrics = metrics.register(subscription);
+        }
+
+        if (faultPolicy != null) {
+            subscription.guard = faultPolicy.newGuard();
         }
     }
 
     protected void register(EventSubscription<? extends Event> subscription) {
-        EventSubscriptionStorage storage = byEvent.computeIfAbsent(
-                subscription.getType(),
-                $ -> new EventSubscriptionStorage<>()
-        );
+        prepare(subscription);
 
-        storage.add(subscription);
+        synchronized (dispatchers) {
+            EventSubscriptionStorage storage = byEvent.computeIfAbsent(
+                    subscription.getType(),
+                    $ -> new EventSubscriptionStorage<>()
+            );
+
+            storage.add(subscription);
+
+            updateDispatchers(subscription.getType());
+        }
 
         Set<EventSubscription<?>> subscriptions = byNamespace.computeIfAbsent(
                 subscription.getNamespace(),
@@ -137,67 +427,194 @@ public abstract class AbstractEventBus implements EventBus {
         subscriptions.add(subscription);
     }
 
-    @Override
-    public EventObjectSubscription subscribe(EventNamespace namespace, Object listener) {
-        Class<?> cls = listener.getClass();
+    /**
+     * Applies all changes at once, each affected storage and dispatcher is rebuilt only once
+     *
+     * @param added   subscriptions to add
+     * @param removed subscriptions to remove, may contain subscriptions from {@code added}
+     */
+    private void commit(List<EventSubscription<?>> added, Collection<EventSubscription<?>> removed) {
+        if (added.isEmpty() && removed.isEmpty()) {
+            return;
+        }
 
-        List<EventSubscription<?>> subscriptions = new ArrayList<>();
+        for (EventSubscription<?> subscription : added) {
+            prepare(subscription);
+        }
 
-        for (Method method : cls.getMethods()) {
-            EventHandler handler = method.getAnnotation(EventHandler.class);
+        Set<EventSubscription<?>> removedSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        removedSet.addAll(removed);
 
-            if (handler == null) {
-                continue;
+        Map<Class<?>, List<EventSubscription>> addedByType = new LinkedHashMap<>();
+
+        for (EventSubscription<?> subscription : added) {
+            addedByType.computeIfAbsent(subscription.getType(), $ -> new ArrayList<>()).add(subscription);
+        }
+
+        Set<Class<?>> types = new LinkedHashSet<>(addedByType.keySet());
+
+        for (EventSubscription<?> subscription : removed) {
+            types.add(subscription.getType());
+        }
+
+        synchronized (dispatchers) {
+            for (Class<?> type : types) {
+                List<EventSubscription> addedToType = addedByType.getOrDefault(type, Collections.emptyList());
+
+                EventSubscriptionStorage storage = addedToType.isEmpty()
+                        ? byEvent.get(type)
+                        : byEvent.computeIfAbsent(type, $ -> new EventSubscriptionStorage<>());
+
+                if (storage == null) {
+                    continue;
+                }
+
+                storage.update(addedToType, removedSet);
+
+                if (storage.getSize() == 0) {
+                    byEvent.remove(type);
+                }
             }
 
-            Class<?>[] params = method.getParameterTypes();
+            if (metrics != null) {
+                for (EventSubscription<?> subscription : removed) {
+                    metrics.unregister(subscription);
+                }
+            }
 
-            if (params.length != 1 || !Event.class.isAssignableFrom(params[0])) {
-                throw new IllegalStateException("Wrong parameter types");
+            for (EventDispatcher<?> dispatcher : dispatchers.values()) {
+                for (Class<?> type : types) {
+                    if (dispatcher.isAffectedBy(type)) {
+                        dispatcher.update(byEvent);
+                        break;
+                    }
+                }
             }
+        }
 
-            Type param = method.getGenericParameterTypes()[0];
+        for (EventSubscription<?> subscription : removed) {
+            removeByNamespace(subscription);
+        }
 
-            if (param instanceof ParameterizedType) {
-                throw new IllegalStateException("Generic as parameter is illegal");
+        for (EventSubscription<?> subscription : added) {
+            if (removedSet.contains(subscription)) {
+                continue;
             }
 
-            Class<? extends Event> eventType = (Class<? extends Event>) params[0];
+            byNamespace.computeIfAbsent(subscription.getNamespace(), $ -> byNamespaceSetFactory.get())
+                    .add(subscription);
+        }
+    }
+
+    /**
+     * Stages changes made by the action and applies them at once, so subscribing and unsubscribing
+     * many handlers rebuilds subscriptions of each event type only once
+     */
+    @Override
+    public void batch(Consumer<EventTransaction> action) {
+        Transaction transaction = new Transaction();
+        action.accept(transaction);
+
+        commit(transaction.added, transaction.removed);
+    }
 
-            EventListener createdListener;
+    @Override
+    public EventObjectSubscription subscribe(EventNamespace namespace, Object listener) {
+        return subscribe(namespace, listener, null);
+    }
 
-            try {
-                MethodHandles.Lookup lookup = PrivateLookup.privateIn(method.getDeclaringClass());
+    @Override
+    public EventObjectSubscription subscribe(EventNamespace namespace, Object listener, Object routingKey) {
+        return subscribe(namespace, listener, routingKey, null);
+    }
 
-                MethodType type = MethodType.methodType(void.class, eventType);
-                MethodHandle handle = lookup.findVirtual(method.getDeclaringClass(), method.getName(), type);
+    /**
+     * Subscribes listener, that is referenced weakly, so it doesn't prevent listener from
+     * being garbage collected. Subscriptions of the collected listener are not called anymore
+     * and are removed in batches on the next publish or {@link #expungeStaleListeners()}.
+     * <p>
+     * Handler of the weak listener is bound to the listener on each call.
+     */
+    @Override
+    public EventObjectSubscription subscribeWeak(EventNamespace namespace, Object listener) {
+        ReferenceQueue<Object> staleListeners = this.staleListeners;
 
-                CallSite callSite = LambdaMetafactory.metafactory(
-                        lookup, "handle",
-                        MethodType.methodType(EventListener.class, method.getDeclaringClass()),
-                        MethodType.methodType(void.class, Event.class),
-                        handle, type
-                );
+        if (staleListeners == null) {
+            synchronized (dispatchers) {
+                staleListeners = this.staleListeners;
 
-                createdListener = (EventListener<?>) callSite.getTarget().bindTo(listener).invokeExact();
-            } catch (Throwable t) {
-                throw new RuntimeException(t);
+                if (staleListeners == null) {
+                    this.staleListeners = staleListeners = new ReferenceQueue<>();
+                }
             }
+        }
+
+        return subscribe(namespace, listener, null, staleListeners);
+    }
+
+    /**
+     * Removes subscriptions of weak listeners, that were garbage collected
+     */
+    public void expungeStaleListeners() {
+        ReferenceQueue<Object> staleListeners = this.staleListeners;
+
+        if (staleListeners == null) {
+            return;
+        }
 
-            if (!handler.concurrent() && !isSynchronized) {
-                createdListener = new EventListener.Sync(this, createdListener);
+        Reference<?> reference;
+
+        while ((reference = staleListeners.poll()) != null) {
+            unsubscribe(((ListenerReference) reference).subscription);
+        }
+    }
+
+    /**
+     * @param staleListeners queue for the weak reference to the listener, or {@code null} to reference it strongly
+     */
+    private EventObjectSubscription subscribe(EventNamespace namespace, Object listener, Object routingKey,
+                                              ReferenceQueue<Object> staleListeners) {
+        EventObjectSubscription objectSubscription = createSubscription(namespace, listener, routingKey,
+                staleListeners);
+
+        commit(objectSubscription.getSubscriptions(), Collections.emptyList());
+
+        return objectSubscription;
+    }
+
+    private EventObjectSubscription createSubscription(EventNamespace namespace, Object listener, Object routingKey,
+                                                       ReferenceQueue<Object> staleListeners) {
+        EventListenerDescriptor descriptor = EventListenerDescriptor.of(listener.getClass());
+
+        List<EventSubscription<?>> subscriptions = new ArrayList<>();
+
+        EventObjectSubscription objectSubscription = new EventObjectSubscription(this,
+                Collections.unmodifiableList(subscriptions));
+
+        ListenerReference reference = staleListeners != null
+                ? new ListenerReference(listener, staleListeners, objectSubscription)
+                : null;
+
+        for (EventListenerDescriptor.Handler handler : descriptor.getHandlers()) {
+            EventListener createdListener = reference != null
+                    ? new WeakListener(reference, handler)
+                    : handler.bind(listener);
+
+            if (!handler.isConcurrent() && !isSynchronized) {
+                // weak listener must not be used as the lock
+                createdListener = lock(reference != null ? reference : listener, createdListener);
             }
 
             EventSubscription<? extends Event> subscription = new EventSubscription<>(
-                    this, namespace, handler.value(), eventType, createdListener, handler.ignoreCancelled()
+                    this, namespace, handler.getPriority(), handler.getType(), createdListener,
+                    handler.isIgnoreCancelled(), handler.isConcurrent(),
+                    Routable.class.isAssignableFrom(handler.getType()) ? routingKey : null
             );
 
-            register(subscription);
-
             subscriptions.add(subscription);
         }
 
-        return new EventObjectSubscription(this, Collections.unmodifiableList(subscriptions));
+        return objectSubscription;
     }
 
     @Override
@@ -205,48 +622,153 @@ public abstract class AbstractEventBus implements EventBus {
         return subscribe(this, listener);
     }
 
+    @Override
+    public <E extends Event> EventSubscription<E> subscribe(EventNamespace namespace, Class<E> type,
+                                                            EventListener<E> listener, EventPriority priority,
+                                                            boolean ignoreCancelled) {
+        EventSubscription<E> subscription = createSubscription(namespace, type, listener, priority, ignoreCancelled);
+        register(subscription);
+
+        return subscription;
+    }
+
+    private <E extends Event> EventSubscription<E> createSubscription(EventNamespace namespace, Class<E> type,
+                                                                      EventListener<E> listener,
+                                                                      EventPriority priority,
+                                                                      boolean ignoreCancelled) {
+        EventListener<E> createdListener = isSynchronized ? listener : (EventListener<E>) lock(listener, listener);
+
+        return new EventSubscription<>(this, namespace, priority, type, createdListener, ignoreCancelled);
+    }
+
     @Override
     public void unsubscribe(EventObjectSubscription objectSubscription) {
-        for (EventSubscription<?> subscription : objectSubscription.getSubscriptions()) {
-            subscription.unsubscribe();
-        }
+        commit(Collections.emptyList(), objectSubscription.getSubscriptions());
     }
 
-    private static class PrivateLookup {
-        private static final MethodHandles.Lookup INTERNAL;
-        private static final Method PRIVATE_LOOKUP_IN;
+    private final class Transaction implements EventTransaction {
+
+        private final List<EventSubscription<?>> added = new ArrayList<>();
+        private final List<EventSubscription<?>> removed = new ArrayList<>();
+
+        @Override
+        public EventObjectSubscription subscribe(Object listener) {
+            return subscribe(AbstractEventBus.this, listener);
+        }
+
+        @Override
+        public EventObjectSubscription subscribe(EventNamespace namespace, Object listener) {
+            return subscribe(namespace, listener, null);
+        }
+
+        @Override
+        public EventObjectSubscription subscribe(EventNamespace namespace, Object listener, Object routingKey) {
+            EventObjectSubscription objectSubscription = createSubscription(namespace, listener, routingKey, null);
+            added.addAll(objectSubscription.getSubscriptions());
+
+            return objectSubscription;
+        }
 
-        static {
-            MethodHandles.Lookup internal = null;
-            Method privateLookupIn = null;
+        @Override
+        public <E extends Event> EventSubscription<E> subscribe(EventNamespace namespace, Class<E> type,
+                                                                EventListener<E> listener, EventPriority priority,
+                                                                boolean ignoreCancelled) {
+            EventSubscription<E> subscription = createSubscription(namespace, type, listener, priority,
+                    ignoreCancelled);
+            added.add(subscription);
 
-            try {
-                privateLookupIn = MethodHandles.class.getDeclaredMethod("privateLookupIn",
-                        Class.class, MethodHandles.Lookup.class);
-            } catch (NoSuchMethodException e) {
-                try {
-                    Field field = MethodHandles.Lookup.class.getDeclaredField("IMPL_LOOKUP");
-                    field.setAccessible(true);
+            return subscription;
+        }
 
-                    internal = (MethodHandles.Lookup) field.get(null);
-                } catch (Exception ex) {
-                    throw new RuntimeException(ex);
+        @Override
+        public void unsubscribe(EventSubscription<?> subscription) {
+            removed.add(subscription);
+        }
+
+        @Override
+        public void unsubscribe(EventObjectSubscription subscription) {
+            removed.addAll(subscription.getSubscriptions());
+        }
+
+        @Override
+        public void unsubscribeAll(EventNamespace namespace) {
+            Set<EventSubscription<?>> subscriptions = byNamespace.get(namespace);
+
+            if (subscriptions != null) {
+                removed.addAll(subscriptions);
+            }
+
+            for (EventSubscription<?> subscription : added) {
+                if (subscription.getNamespace().equals(namespace)) {
+                    removed.add(subscription);
                 }
             }
+        }
+    }
+
+    private static final class ListenerReference extends WeakReference<Object> {
 
-            INTERNAL = internal;
-            PRIVATE_LOOKUP_IN = privateLookupIn;
+        private final EventObjectSubscription subscription;
+
+        private ListenerReference(Object listener, ReferenceQueue<Object> queue, EventObjectSubscription subscription) {
+            super(listener, queue);
+
+            this.subscription = subscription;
         }
+    }
+
+    private static final class WeakListener implements EventListener {
 
-        public static MethodHandles.Lookup privateIn(Class<?> cls) {
-            if (INTERNAL == null) {
-                try {
-                    return (MethodHandles.Lookup) PRIVATE_LOOKUP_IN.invoke(null, cls, MethodHandles.lookup());
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
+        private final ListenerReference reference;
+        private final EventListenerDescriptor.Handler handler;
+
+        /**
+         * Handler bound to the listener, referenced weakly, because it references the listener strongly.
+         * It is rebound only after it is collected, racy updates just bind it once more
+         */
+        private WeakReference<EventListener> boundListener = new WeakReference<>(null);
+
+        private WeakListener(ListenerReference reference, EventListenerDescriptor.Handler handler) {
+            this.reference = reference;
+            this.handler = handler;
+        }
+
+        @Override
+        public void handle(Event event) {
+            EventListener boundListener = this.boundListener.get();
+
+            if (boundListener == null) {
+                Object listener = reference.get();
+
+                if (listener == null) {
+                    return;
                 }
+
+                boundListener = handler.bind(listener);
+                this.boundListener = new WeakReference<>(boundListener);
+            }
+
+            boundListener.handle(event);
+        }
+    }
+
+    private static final class DispatcherPublisher<E extends Event> implements EventPublisher<E> {
+
+        private final AbstractEventBus bus;
+        private final EventDispatcher<E> dispatcher;
+
+        private DispatcherPublisher(AbstractEventBus bus, EventDispatcher<E> dispatcher) {
+            this.bus = bus;
+            this.dispatcher = dispatcher;
+        }
+
+        @Override
+        public void publish(E event) {
+            if (event.getClass() == dispatcher.getType()) {
+                bus.publish(event, dispatcher);
             } else {
-                return INTERNAL.in(cls);
+                // subclass may have its own handlers
+                bus.publish(event);
             }
         }
     }
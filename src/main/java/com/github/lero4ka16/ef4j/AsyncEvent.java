@@ -16,56 +16,281 @@
 
 package com.github.lero4ka16.ef4j;
 
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
+ * Event, that is done only after all its intents are done.
+ * <p>
+ * Handlers call {@link #addIntent()} to postpone completion of the event and {@link #doneIntent()}
+ * when they are finished. Completion can be awaited with {@link #getFuture()}.
+ *
  * @author lero4ka16
  */
 public abstract class AsyncEvent<Self extends AsyncEvent<Self>> extends Event {
 
+    private static final int COUNT_MASK = 0x1FFFFFFF;
+    private static final int TIMED_OUT = 1 << 29;
+    private static final int PUBLISHED = 1 << 30;
+    private static final int DONE = 1 << 31;
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicIntegerFieldUpdater<AsyncEvent> STATE =
+            AtomicIntegerFieldUpdater.newUpdater(AsyncEvent.class, "state");
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<AsyncEvent, CompletableFuture> FUTURE =
+            AtomicReferenceFieldUpdater.newUpdater(AsyncEvent.class, CompletableFuture.class, "future");
+
     private final AsyncCallback<Self> callback;
 
-    private final AtomicInteger intents = new AtomicInteger();
-    private final AtomicBoolean published = new AtomicBoolean();
+    /**
+     * Number of remaining intents with {@link #TIMED_OUT}, {@link #PUBLISHED} and {@link #DONE} flags
+     */
+    private volatile int state;
+
+    private volatile CompletableFuture<Self> future;
+
+    private volatile ScheduledFuture<?> deadline;
+
+    /**
+     * Written before {@link #PUBLISHED} flag, so it is visible to the thread, that completes the event
+     */
+    private Object trace;
+
+    public AsyncEvent() {
+        this(null);
+    }
 
     public AsyncEvent(AsyncCallback<Self> callback) {
         this.callback = callback;
     }
 
     public void addIntent() {
-        if (published.get()) {
-            throw new IllegalStateException("Event already published");
-        }
+        int current;
 
-        intents.incrementAndGet();
+        do {
+            current = state;
+
+            if ((current & (PUBLISHED | DONE)) != 0) {
+                throw new IllegalStateException("Event already published");
+            }
+
+            if ((current & COUNT_MASK) == COUNT_MASK) {
+                throw new IllegalStateException("Too many intents");
+            }
+        } while (!STATE.compareAndSet(this, current, current + 1));
     }
 
-    @SuppressWarnings("unchecked")
+    /**
+     * Adds intent, that is done when the given stage is completed, normally or exceptionally
+     */
+    public void addIntent(CompletionStage<?> stage) {
+        addIntent();
+
+        stage.whenComplete(($, $$) -> doneIntent());
+    }
+
+    /**
+     * Intents done after the deadline are ignored
+     */
     public void doneIntent() {
-        if (intents.get() == 0) {
-            throw new IllegalStateException("No remaining intents");
+        int current;
+        int next;
+
+        do {
+            current = state;
+
+            if ((current & COUNT_MASK) == 0) {
+                throw new IllegalStateException("No remaining intents");
+            }
+
+            next = current - 1;
+
+            if ((next & (COUNT_MASK | PUBLISHED)) == PUBLISHED) {
+                next |= DONE;
+            }
+        } while (!STATE.compareAndSet(this, current, next));
+
+        if ((current & DONE) == 0 && (next & DONE) != 0) {
+            done();
         }
+    }
 
-        int now = intents.decrementAndGet();
+    /**
+     * Completes the event after the given time, even if some intents are still not done,
+     * then {@link #isTimedOut()} returns true.
+     * <p>
+     * Pooled event may be reused right after the deadline, so handlers must not use it after that.
+     */
+    public void setDeadline(long timeout, TimeUnit unit) {
+        if (isDone()) {
+            return;
+        }
 
-        if (now == 0 && published.get()) {
-            callback.done((Self) this);
-            postDone();
+        ScheduledFuture<?> previous = deadline;
+
+        deadline = Timer.INSTANCE.schedule(this::expire, timeout, unit);
+
+        if (previous != null) {
+            previous.cancel(false);
+        }
+
+        if (isDone()) {
+            // completed concurrently
+            cancelDeadline();
         }
     }
 
+    /**
+     * @return future, that is completed with this event after all intents are done or after the deadline
+     */
     @SuppressWarnings("unchecked")
+    public CompletableFuture<Self> getFuture() {
+        CompletableFuture<Self> future = this.future;
+
+        if (future == null) {
+            FUTURE.compareAndSet(this, null, new CompletableFuture<>());
+            future = this.future;
+
+            if (isDone()) {
+                // done() could miss the future
+                future.complete((Self) this);
+            }
+        }
+
+        return future;
+    }
+
+    public boolean isDone() {
+        return (state & DONE) != 0;
+    }
+
+    /**
+     * @return true, if the event was completed by the deadline
+     */
+    public boolean isTimedOut() {
+        return (state & TIMED_OUT) != 0;
+    }
+
     @Override
     public final void postPublish(EventBus bus) {
-        published.set(true);
+        trace = EventTracer.INSTANCE.beginAsync();
+
+        int current;
+        int next;
+
+        do {
+            current = state;
+            next = current | PUBLISHED;
 
-        if (intents.get() == 0) {
+            if ((current & COUNT_MASK) == 0) {
+                next |= DONE;
+            }
+        } while (!STATE.compareAndSet(this, current, next));
+
+        if ((current & DONE) == 0 && (next & DONE) != 0) {
+            done();
+        }
+    }
+
+    private void expire() {
+        int current;
+
+        do {
+            current = state;
+
+            if ((current & DONE) != 0) {
+                return;
+            }
+        } while (!STATE.compareAndSet(this, current, current | DONE | TIMED_OUT));
+
+        // callbacks must not delay deadlines of other events
+        CompletableFuture.runAsync(this::done);
+    }
+
+    private void cancelDeadline() {
+        ScheduledFuture<?> deadline = this.deadline;
+
+        if (deadline != null) {
+            deadline.cancel(false);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void done() {
+        if (!isTimedOut()) {
+            cancelDeadline();
+        }
+
+        if (callback != null) {
             callback.done((Self) this);
-            postDone();
         }
+
+        postDone();
+
+        Object trace = this.trace;
+
+        if (trace != null) {
+            EventTracer.INSTANCE.endAsync(trace, this);
+        }
+
+        CompletableFuture<Self> future = this.future;
+
+        if (future != null) {
+            future.complete((Self) this);
+        }
+
+        super.release();
+    }
+
+    /**
+     * Pooled async event is released only after all intents are done
+     */
+    @Override
+    void release() {
+    }
+
+    @Override
+    void resetState() {
+        state = 0;
+        future = null;
+        deadline = null;
+        trace = null;
     }
 
     protected void postDone() {
     }
+
+    /**
+     * Shared timer for deadlines, started on the first use, expired events
+     * are completed in {@link CompletableFuture#runAsync(Runnable) the default async executor}
+     */
+    private static final class Timer {
+
+        private static final ScheduledExecutorService INSTANCE = create();
+
+        private static ScheduledExecutorService create() {
+            ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, task -> {
+                Thread thread = Executors.defaultThreadFactory().newThread(task);
+                thread.setName("ef4j-async-deadline");
+                thread.setDaemon(true);
+
+                return thread;
+            });
+
+            executor.setRemoveOnCancelPolicy(true);
+
+            return executor;
+        }
+
+    }
+
 }
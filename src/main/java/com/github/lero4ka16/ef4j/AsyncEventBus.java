@@ -0,0 +1,132 @@
+/*
+ *    Copyright 2021 Lero4ka16
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.github.lero4ka16.ef4j;
+
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Thread safe event bus, that executes handlers using the {@link Executor}
+ * instead of the thread that publishes an event.
+ * <p>
+ * Handlers of the single event are still executed one after another in order of
+ * their priority, so {@link Cancellable} works as usual.
+ *
+ * @author lero4ka16
+ */
+public final class AsyncEventBus extends AbstractEventBus {
+
+    private final Executor executor;
+
+    public AsyncEventBus(Executor executor) {
+        this(executor, EventLockMode.BUS);
+    }
+
+    /**
+     * @param executor executor for publishing
+     * @param lockMode lock used for handlers, that are not {@link EventHandler#concurrent()}
+     */
+    public AsyncEventBus(Executor executor, EventLockMode lockMode) {
+        this(executor, lockMode, null);
+    }
+
+    /**
+     * @param executor executor for publishing
+     * @param lockMode lock used for handlers, that are not {@link EventHandler#concurrent()}
+     * @param metrics  metrics of the bus, or {@code null} to disable them
+     */
+    public AsyncEventBus(Executor executor, EventLockMode lockMode, EventBusMetrics metrics) {
+        this(executor, lockMode, metrics, null);
+    }
+
+    /**
+     * @param metrics     metrics of the bus, or {@code null} to disable them
+     * @param faultPolicy policy for failing and slow handlers, or {@code null} to disable it
+     */
+    public AsyncEventBus(Executor executor, EventLockMode lockMode, EventBusMetrics metrics,
+                         EventFaultPolicy faultPolicy) {
+        super(false, new ConcurrentHashMap<>(), new ConcurrentHashMap<>(), ConcurrentHashMap::newKeySet,
+                lockMode, null, metrics, faultPolicy);
+
+        this.executor = executor;
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Publishes an event using the executor, exceptions of handlers are thrown in the executor
+     * thread, so they reach its uncaught exception handler, use {@link #publishAsync(Event)}
+     * to receive them instead
+     */
+    @Override
+    public void publish(Event event) {
+        executor.execute(() -> super.publish(event));
+    }
+
+    @Override
+    void publish(Event event, EventDispatcher<?> dispatcher) {
+        executor.execute(() -> super.publish(event, dispatcher));
+    }
+
+    @Override
+    public void publishAll(Collection<? extends Event> events) {
+        executor.execute(() -> super.publishAll(events));
+    }
+
+    /**
+     * Publishes an event using the executor
+     *
+     * @param event event
+     * @param <E>   type of the event
+     * @return future, that is completed after all handlers including {@link EventPriority#MONITOR}
+     * are executed, or for {@link AsyncEvent} after all its intents are done. Future of the event
+     * from {@link EventPool} is completed with {@code null}, because the event is already returned to the pool
+     */
+    public <E extends Event> CompletableFuture<E> publishAsync(E event) {
+        CompletableFuture<E> future = new CompletableFuture<>();
+        E result = event.pool != null ? null : event;
+
+        if (event instanceof AsyncEvent) {
+            ((AsyncEvent<?>) event).getFuture().thenRun(() -> future.complete(result));
+        }
+
+        try {
+            executor.execute(() -> {
+                try {
+                    super.publish(event);
+                } catch (Throwable t) {
+                    future.completeExceptionally(t);
+                    return;
+                }
+
+                if (!(event instanceof AsyncEvent)) {
+                    future.complete(result);
+                }
+            });
+        } catch (Throwable t) {
+            future.completeExceptionally(t);
+        }
+
+        return future;
+    }
+
+}
@@ -17,6 +17,8 @@
 package com.github.lero4ka16.ef4j;
 
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 /**
  * @author lero4ka16
@@ -24,6 +26,59 @@ import java.util.concurrent.ConcurrentHashMap;
 public final class ConcurrentEventBus extends AbstractEventBus {
 
     public ConcurrentEventBus() {
-        super(false, new ConcurrentHashMap<>(), new ConcurrentHashMap<>(), ConcurrentHashMap::newKeySet);
+        this(EventLockMode.BUS, null);
+    }
+
+    public ConcurrentEventBus(EventLockMode lockMode) {
+        this(lockMode, null);
+    }
+
+    public ConcurrentEventBus(Executor concurrentExecutor) {
+        this(EventLockMode.BUS, concurrentExecutor);
+    }
+
+    /**
+     * @param lockMode           lock used for handlers, that are not {@link EventHandler#concurrent()}
+     * @param concurrentExecutor executor for {@link EventHandler#concurrent()} handlers, they are started
+     *                           in order of their priority and joined before {@link EventPriority#MONITOR}
+     *                           handlers, or {@code null} to execute them in the publishing thread
+     */
+    public ConcurrentEventBus(EventLockMode lockMode, Executor concurrentExecutor) {
+        this(lockMode, concurrentExecutor, null);
+    }
+
+    /**
+     * @param metrics metrics of the bus, or {@code null} to disable them
+     */
+    public ConcurrentEventBus(EventLockMode lockMode, Executor concurrentExecutor, EventBusMetrics metrics) {
+        this(lockMode, concurrentExecutor, metrics, null);
+    }
+
+    /**
+     * @param metrics     metrics of the bus, or {@code null} to disable them
+     * @param faultPolicy policy for failing and slow handlers, or {@code null} to disable it
+     */
+    public ConcurrentEventBus(EventLockMode lockMode, Executor concurrentExecutor, EventBusMetrics metrics,
+                              EventFaultPolicy faultPolicy) {
+        super(false, new ConcurrentHashMap<>(), new ConcurrentHashMap<>(), ConcurrentHashMap::newKeySet,
+                lockMode, concurrentExecutor, metrics, faultPolicy);
+    }
+
+    /**
+     * Creates bus, that executes {@link EventHandler#concurrent()} handlers in virtual threads
+     *
+     * @throws UnsupportedOperationException if virtual threads are not supported by current JVM
+     */
+    public static ConcurrentEventBus withVirtualThreads() {
+        Executor executor;
+
+        try {
+            // resolved reflectively to keep compatibility with Java 8
+            executor = (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            throw new UnsupportedOperationException("Virtual threads are not supported", e);
+        }
+
+        return new ConcurrentEventBus(EventLockMode.BUS, executor);
     }
 }
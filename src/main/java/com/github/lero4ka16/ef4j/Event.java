@@ -20,6 +20,39 @@ package com.github.lero4ka16.ef4j;
  * @author lero4ka16
  */
 public abstract class Event {
+
+    /**
+     * Pool, that owns this event, or {@code null} if event isn't pooled
+     */
+    EventPool<?> pool;
+
     public void postPublish(EventBus bus) {
     }
+
+    /**
+     * Throws {@link IllegalStateException}, if event is already returned to the pool,
+     * works only with {@link EventPool} in debug mode
+     */
+    protected final void ensureNotRecycled() {
+        EventPool<?> pool = this.pool;
+
+        if (pool != null && pool.isRecycled(this)) {
+            throw new IllegalStateException("Event is used after it was recycled");
+        }
+    }
+
+    /**
+     * Called by the bus after event is published
+     */
+    void release() {
+        if (pool != null) {
+            pool.releaseUnchecked(this);
+        }
+    }
+
+    /**
+     * Resets internal state of the event before it is returned to the pool
+     */
+    void resetState() {
+    }
 }
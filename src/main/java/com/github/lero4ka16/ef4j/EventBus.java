@@ -16,6 +16,11 @@
 
 package com.github.lero4ka16.ef4j;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
 /**
  * @author lero4ka16
  */
@@ -25,8 +30,59 @@ public interface EventBus extends EventNamespace {
 
     EventObjectSubscription subscribe(EventNamespace namespace, Object listener);
 
+    /**
+     * Subscribes listener, which handlers of {@link Routable} events are called
+     * only for events with the given routing key, other handlers are subscribed as usual
+     *
+     * @param namespace  namespace
+     * @param listener   listener
+     * @param routingKey routing key, or {@code null} to handle events of any key
+     * @return subscription
+     */
+    EventObjectSubscription subscribe(EventNamespace namespace, Object listener, Object routingKey);
+
+    default EventObjectSubscription subscribeWeak(Object listener) {
+        return subscribeWeak(this, listener);
+    }
+
+    /**
+     * Subscribes listener, that is referenced weakly, so subscriptions are removed
+     * after the listener is garbage collected
+     *
+     * @param namespace namespace
+     * @param listener  listener
+     * @return subscription
+     */
+    EventObjectSubscription subscribeWeak(EventNamespace namespace, Object listener);
+
+    /**
+     * Subscribes the listener directly, without scanning for {@link EventHandler} methods
+     *
+     * @param type            type of events
+     * @param listener        listener
+     * @param priority        priority of the listener
+     * @param ignoreCancelled whether the listener is not called for cancelled events
+     * @param <E>             type of events
+     * @return subscription
+     */
+    default <E extends Event> EventSubscription<E> subscribe(Class<E> type, EventListener<E> listener,
+                                                             EventPriority priority, boolean ignoreCancelled) {
+        return subscribe(this, type, listener, priority, ignoreCancelled);
+    }
+
+    <E extends Event> EventSubscription<E> subscribe(EventNamespace namespace, Class<E> type,
+                                                     EventListener<E> listener, EventPriority priority,
+                                                     boolean ignoreCancelled);
+
     void unsubscribe(EventSubscription<?> subscription);
 
+    /**
+     * Applies all changes made by the action at once
+     *
+     * @param action action, that subscribes and unsubscribes listeners using the transaction
+     */
+    void batch(Consumer<EventTransaction> action);
+
     void unsubscribe(EventObjectSubscription subscription);
 
     void unsubscribeAll(EventNamespace namespace);
@@ -35,4 +91,47 @@ public interface EventBus extends EventNamespace {
 
     void publish(Event event);
 
+    /**
+     * Checks whether an event of the given class would be delivered to any handler,
+     * including handlers of its superclasses and interfaces
+     *
+     * @param type class of the event
+     * @return true, if there is at least one subscriber
+     */
+    boolean hasSubscribers(Class<? extends Event> type);
+
+    /**
+     * Publishes an event created by the supplier, supplier is not called
+     * if there are no subscribers of the given type. Only subscribers of the given type
+     * are checked, so supplier should create an event of exactly this type: subscribers
+     * of a subclass aren't called, if the given type itself has no subscribers
+     *
+     * @param type     class of the event
+     * @param supplier supplier of the event
+     * @param <E>      type of the event
+     */
+    default <E extends Event> void publish(Class<E> type, Supplier<E> supplier) {
+        if (hasSubscribers(type)) {
+            publish(supplier.get());
+        }
+    }
+
+    /**
+     * Returns publisher of events of the given type, depending on the implementation it
+     * can be faster than {@link #publish(Event)}
+     */
+    default <E extends Event> EventPublisher<E> publisher(Class<E> type) {
+        return this::publish;
+    }
+
+    default void publishAll(Event... events) {
+        publishAll(Arrays.asList(events));
+    }
+
+    default void publishAll(Collection<? extends Event> events) {
+        for (Event event : events) {
+            publish(event);
+        }
+    }
+
 }
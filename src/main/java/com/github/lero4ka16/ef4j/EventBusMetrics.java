@@ -0,0 +1,205 @@
+/*
+ *    Copyright 2021 Lero4ka16
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.github.lero4ka16.ef4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Dispatch statistics of the event bus, that is given to the bus constructor.
+ * <p>
+ * Counts published events of each type and measures duration of each subscription,
+ * including the time spent waiting for the handler lock.
+ * Buses without metrics don't measure anything.
+ *
+ * @author lero4ka16
+ */
+public final class EventBusMetrics {
+
+    private final Map<Class<?>, LongAdder> publishCounts = new ConcurrentHashMap<>();
+    private final Map<EventSubscription<?>, SubscriptionMetrics> subscriptions = new ConcurrentHashMap<>();
+
+    LongAdder getPublishCounter(Class<?> type) {
+        return publishCounts.computeIfAbsent(type, $ -> new LongAdder());
+    }
+
+    SubscriptionMetrics register(EventSubscription<?> subscription) {
+        return subscriptions.computeIfAbsent(subscription, $ -> new SubscriptionMetrics());
+    }
+
+    void unregister(EventSubscription<?> subscription) {
+        subscriptions.remove(subscription);
+    }
+
+    void unregisterAll() {
+        subscriptions.clear();
+    }
+
+    /**
+     * Collects current values of all counters, values are not
+     * changed when events are published after the snapshot is taken
+     */
+    public Snapshot snapshot() {
+        Map<Class<?>, Long> publishCounts = new HashMap<>();
+
+        for (Map.Entry<Class<?>, LongAdder> entry : this.publishCounts.entrySet()) {
+            publishCounts.put(entry.getKey(), entry.getValue().sum());
+        }
+
+        List<SubscriptionSnapshot> subscriptions = new ArrayList<>();
+
+        for (Map.Entry<EventSubscription<?>, SubscriptionMetrics> entry : this.subscriptions.entrySet()) {
+            subscriptions.add(entry.getValue().snapshot(entry.getKey()));
+        }
+
+        return new Snapshot(Collections.unmodifiableMap(publishCounts), Collections.unmodifiableList(subscriptions));
+    }
+
+    static final class SubscriptionMetrics {
+
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder failures = new LongAdder();
+
+        void record(long nanos) {
+            latency.record(nanos);
+        }
+
+        void fail() {
+            failures.increment();
+        }
+
+        SubscriptionSnapshot snapshot(EventSubscription<?> subscription) {
+            long[] counts = latency.getCounts();
+            long invocations = 0;
+
+            for (long count : counts) {
+                invocations += count;
+            }
+
+            return new SubscriptionSnapshot(subscription, invocations, failures.sum(),
+                    LatencyHistogram.getPercentile(counts, 50),
+                    LatencyHistogram.getPercentile(counts, 99),
+                    latency.getMax());
+        }
+
+    }
+
+    public static final class Snapshot {
+
+        private final Map<Class<?>, Long> publishCounts;
+        private final List<SubscriptionSnapshot> subscriptions;
+
+        private Snapshot(Map<Class<?>, Long> publishCounts, List<SubscriptionSnapshot> subscriptions) {
+            this.publishCounts = publishCounts;
+            this.subscriptions = subscriptions;
+        }
+
+        /**
+         * @return number of published events by their class
+         */
+        public Map<Class<?>, Long> getPublishCounts() {
+            return publishCounts;
+        }
+
+        public long getPublishCount(Class<? extends Event> type) {
+            return publishCounts.getOrDefault(type, 0L);
+        }
+
+        /**
+         * @return statistics of current subscriptions
+         */
+        public List<SubscriptionSnapshot> getSubscriptions() {
+            return subscriptions;
+        }
+
+        @Override
+        public String toString() {
+            return "Snapshot{publishCounts=" + publishCounts + ", subscriptions=" + subscriptions + '}';
+        }
+    }
+
+    /**
+     * Statistics of the single subscription, durations are in nanoseconds,
+     * percentiles are approximate and may be up to 25% greater than actual value
+     */
+    public static final class SubscriptionSnapshot {
+
+        private final EventSubscription<?> subscription;
+
+        private final long invocations;
+        private final long failures;
+
+        private final long p50;
+        private final long p99;
+        private final long max;
+
+        private SubscriptionSnapshot(EventSubscription<?> subscription, long invocations, long failures,
+                                     long p50, long p99, long max) {
+            this.subscription = subscription;
+            this.invocations = invocations;
+            this.failures = failures;
+            this.p50 = p50;
+            this.p99 = p99;
+            this.max = max;
+        }
+
+        public EventSubscription<?> getSubscription() {
+            return subscription;
+        }
+
+        public long getInvocations() {
+            return invocations;
+        }
+
+        /**
+         * @return number of invocations, that have thrown an exception
+         */
+        public long getFailures() {
+            return failures;
+        }
+
+        public long getP50() {
+            return p50;
+        }
+
+        public long getP99() {
+            return p99;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return "SubscriptionSnapshot{type=" + subscription.getType().getName()
+                    + ", priority=" + subscription.getPriority()
+                    + ", invocations=" + invocations
+                    + ", failures=" + failures
+                    + ", p50=" + p50
+                    + ", p99=" + p99
+                    + ", max=" + max + '}';
+        }
+    }
+
+}
@@ -0,0 +1,138 @@
+/*
+ *    Copyright 2021 Lero4ka16
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.github.lero4ka16.ef4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Buffer in front of the bus, that keeps only the latest pending event
+ * of each type and {@link Coalescable#getCoalescingKey() key}.
+ * <p>
+ * Pending events are published to the bus on {@link #flush()}, so handlers are called
+ * at most once per key between flushes. Events, that are replaced by the newer ones,
+ * are not published at all, pooled events are returned to their pool.
+ * Events of different keys may be published in any order.
+ *
+ * @author lero4ka16
+ */
+public final class EventCoalescer implements AutoCloseable {
+
+    private final EventBus bus;
+
+    private final Map<Class<?>, Map<Object, Event>> pending = new ConcurrentHashMap<>();
+
+    private final ScheduledFuture<?> tick;
+
+    /**
+     * Creates coalescer, that is flushed only on demand
+     */
+    public EventCoalescer(EventBus bus) {
+        this.bus = bus;
+        this.tick = null;
+    }
+
+    /**
+     * Creates coalescer, that is flushed periodically
+     *
+     * @param bus       target bus
+     * @param scheduler scheduler for flushes
+     * @param period    time between flushes
+     * @param unit      unit of the period
+     */
+    public EventCoalescer(EventBus bus, ScheduledExecutorService scheduler, long period, TimeUnit unit) {
+        this.bus = bus;
+        this.tick = scheduler.scheduleAtFixedRate(this::flush, period, period, unit);
+    }
+
+    /**
+     * Buffers {@link Coalescable} event until the next flush, other events
+     * and events without coalescing key are published immediately
+     *
+     * @throws IllegalArgumentException if event is {@link AsyncEvent}, replaced async event would never be done
+     */
+    public void publish(Event event) {
+        if (!(event instanceof Coalescable)) {
+            bus.publish(event);
+            return;
+        }
+
+        if (event instanceof AsyncEvent) {
+            throw new IllegalArgumentException("Async events can't be coalesced");
+        }
+
+        Object key = ((Coalescable) event).getCoalescingKey();
+
+        if (key == null) {
+            bus.publish(event);
+            return;
+        }
+
+        Event previous = pending.computeIfAbsent(event.getClass(), $ -> new ConcurrentHashMap<>())
+                .put(key, event);
+
+        if (previous != null) {
+            previous.release();
+        }
+    }
+
+    /**
+     * Publishes all pending events, flushes don't run concurrently,
+     * so the latest event of the key is always published last
+     */
+    public synchronized void flush() {
+        for (Map<Object, Event> byKey : pending.values()) {
+            List<Event> events = null;
+
+            for (Object key : byKey.keySet()) {
+                Event event = byKey.remove(key);
+
+                if (event != null) {
+                    if (events == null) {
+                        events = new ArrayList<>(byKey.size() + 1);
+                    }
+
+                    events.add(event);
+                }
+            }
+
+            if (events != null) {
+                // list isn't reused, because some buses publish it later
+                bus.publishAll(events);
+            }
+        }
+    }
+
+    /**
+     * Stops periodic flushes and publishes all pending events
+     */
+    @Override
+    public void close() {
+        if (tick != null) {
+            tick.cancel(false);
+        }
+
+        flush();
+    }
+
+}
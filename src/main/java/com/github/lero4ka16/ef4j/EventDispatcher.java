@@ -0,0 +1,128 @@
+/*
+ *    Copyright 2021 Lero4ka16
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.github.lero4ka16.ef4j;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Flattened dispatch table of the concrete event class, contains subscriptions
+ * of the class itself and of all its superclasses and interfaces.
+ * <p>
+ * Supertypes are resolved only once, snapshot is rebuilt by the bus
+ * when a subscription of one of these types changes.
+ *
+ * @author lero4ka16
+ */
+@SuppressWarnings({"rawtypes", "unchecked"})
+final class EventDispatcher<E extends Event> {
+
+    private final Class<E> type;
+    private final Class<?>[] supertypes;
+
+    private final LongAdder publishCounter;
+
+    private volatile EventSubscriptionStorage.Snapshot<E> snapshot = EventSubscriptionStorage.Snapshot.empty();
+
+    EventDispatcher(Class<E> type, LongAdder publishCounter) {
+        this.type = type;
+        this.supertypes = resolveSupertypes(type);
+        this.publishCounter = publishCounter;
+    }
+
+    public Class<E> getType() {
+        return type;
+    }
+
+    /**
+     * @return counter of published events, or {@code null} if metrics are disabled
+     */
+    public LongAdder getPublishCounter() {
+        return publishCounter;
+    }
+
+    public EventSubscriptionStorage.Snapshot<E> getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * @param subscriptionType type of the changed subscription
+     * @return true, if events of that type are delivered by this dispatcher
+     */
+    public boolean isAffectedBy(Class<?> subscriptionType) {
+        return subscriptionType.isAssignableFrom(type);
+    }
+
+    public void update(Map<Type, EventSubscriptionStorage<?>> byEvent) {
+        List<EventSubscriptionStorage.Snapshot<E>> snapshots = new ArrayList<>();
+
+        for (Class<?> supertype : supertypes) {
+            EventSubscriptionStorage storage = byEvent.get(supertype);
+
+            if (storage != null) {
+                snapshots.add(storage.getSnapshot());
+            }
+        }
+
+        snapshot = EventSubscriptionStorage.Snapshot.merge(snapshots);
+    }
+
+    /**
+     * Same as {@code getSnapshot().getSize() != 0} of the dispatcher of the given type,
+     * but without the dispatcher
+     */
+    static boolean hasSubscriptions(Class<?> type, Map<Type, EventSubscriptionStorage<?>> byEvent) {
+        for (Class<?> supertype : resolveSupertypes(type)) {
+            EventSubscriptionStorage<?> storage = byEvent.get(supertype);
+
+            if (storage != null && storage.getSize() != 0) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static Class<?>[] resolveSupertypes(Class<?> type) {
+        Set<Class<?>> result = new LinkedHashSet<>();
+
+        for (Class<?> cls = type; cls != null && cls != Object.class; cls = cls.getSuperclass()) {
+            result.add(cls);
+        }
+
+        for (Class<?> cls = type; cls != null; cls = cls.getSuperclass()) {
+            addInterfaces(cls, result);
+        }
+
+        return result.toArray(new Class[0]);
+    }
+
+    private static void addInterfaces(Class<?> type, Set<Class<?>> result) {
+        for (Class<?> itf : type.getInterfaces()) {
+            if (result.add(itf)) {
+                addInterfaces(itf, result);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,231 @@
+/*
+ *    Copyright 2021 Lero4ka16
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.github.lero4ka16.ef4j;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Defines what the bus does with handlers, that throw an exception or take longer
+ * than the threshold, such invocations are called violations.
+ * <p>
+ * Duration includes the time spent waiting for the handler lock, see {@link EventLockMode}.
+ *
+ * @author lero4ka16
+ */
+public final class EventFaultPolicy {
+
+    private static final Logger LOGGER = Logger.getLogger("com.github.lero4ka16.ef4j");
+
+    private final Action action;
+
+    private final long slowThresholdNanos;
+    private final int maxViolations;
+    private final long quarantineNanos;
+
+    private final Reporter reporter;
+
+    /**
+     * Creates policy, that treats only exceptions as violations
+     *
+     * @param action action for violations
+     */
+    public EventFaultPolicy(Action action) {
+        this(action, null, 5, Duration.ofSeconds(30), Reporter.LOGGING);
+    }
+
+    /**
+     * @param action         action for violations
+     * @param slowThreshold  duration of the handler, after which it is considered slow,
+     *                       or {@code null} to ignore duration
+     * @param maxViolations  number of violations in a row, after which subscription is quarantined,
+     *                       ignored unless action is {@link Action#QUARANTINE}
+     * @param quarantineTime time, after which quarantined subscription is tried again
+     * @param reporter       reporter of violations
+     */
+    public EventFaultPolicy(Action action, Duration slowThreshold, int maxViolations, Duration quarantineTime,
+                            Reporter reporter) {
+        if (maxViolations <= 0) {
+            throw new IllegalArgumentException("Max violations must be positive");
+        }
+
+        this.action = action;
+        this.slowThresholdNanos = slowThreshold != null ? slowThreshold.toNanos() : Long.MAX_VALUE;
+        this.maxViolations = maxViolations;
+        this.quarantineNanos = quarantineTime.toNanos();
+        this.reporter = reporter;
+    }
+
+    public Action getAction() {
+        return action;
+    }
+
+    Guard newGuard() {
+        return new Guard();
+    }
+
+    public enum Action {
+
+        /**
+         * Reports violations, exceptions are still thrown to the publisher
+         */
+        LOG,
+
+        /**
+         * Reports violations and skips handlers, that have thrown an exception,
+         * so the remaining handlers are still executed. {@link VirtualMachineError}
+         * and {@link LinkageError} are always thrown to the publisher
+         */
+        SKIP,
+
+        /**
+         * Like {@link #SKIP}, but after several violations in a row subscription is not called
+         * for some time, then it is called once again, and if it still misbehaves it is quarantined again
+         */
+        QUARANTINE
+
+    }
+
+    public interface Reporter {
+
+        Reporter LOGGING = new Reporter() {
+            @Override
+            public void violation(EventSubscription<?> subscription, Event event, long durationNanos,
+                                  Throwable error) {
+                if (error != null) {
+                    LOGGER.log(Level.WARNING, "Handler of " + subscription.getType().getName()
+                            + " failed to handle " + event, error);
+                } else {
+                    LOGGER.warning("Handler of " + subscription.getType().getName() + " took "
+                            + durationNanos / 1_000_000 + " ms to handle " + event);
+                }
+            }
+
+            @Override
+            public void quarantined(EventSubscription<?> subscription) {
+                LOGGER.warning("Handler of " + subscription.getType().getName() + " is quarantined");
+            }
+
+            @Override
+            public void recovered(EventSubscription<?> subscription) {
+                LOGGER.info("Handler of " + subscription.getType().getName() + " is recovered");
+            }
+        };
+
+        /**
+         * @param error exception thrown by the handler, or {@code null} if handler was slow
+         */
+        void violation(EventSubscription<?> subscription, Event event, long durationNanos, Throwable error);
+
+        default void quarantined(EventSubscription<?> subscription) {
+        }
+
+        default void recovered(EventSubscription<?> subscription) {
+        }
+
+    }
+
+    /**
+     * State of the single subscription
+     */
+    final class Guard {
+
+        /**
+         * Results of {@link #tryAcquire()}
+         */
+        static final int DENIED = 0;
+        static final int ACQUIRED = 1;
+        static final int TRIAL = 2;
+
+        private final AtomicInteger violations = new AtomicInteger();
+
+        /**
+         * End of the quarantine, meaningful only if {@link #quarantined} is set
+         */
+        private volatile long quarantinedUntil;
+        private volatile boolean quarantined;
+
+        /**
+         * Set while the single trial invocation is made after the quarantine
+         */
+        private final AtomicBoolean trial = new AtomicBoolean();
+
+        /**
+         * @return {@link #DENIED}, if handler must not be called, {@link #TRIAL}, if it is
+         * the trial invocation after the quarantine, otherwise {@link #ACQUIRED}
+         */
+        int tryAcquire() {
+            if (!quarantined) {
+                return ACQUIRED;
+            }
+
+            return System.nanoTime() - quarantinedUntil >= 0 && trial.compareAndSet(false, true)
+                    ? TRIAL
+                    : DENIED;
+        }
+
+        /**
+         * Called after handler is completed, invocations, that were started before the quarantine,
+         * don't affect it, only the trial invocation ends or extends the quarantine
+         *
+         * @param isTrial whether {@link #tryAcquire()} returned {@link #TRIAL} for this invocation
+         * @return true, if the error must be thrown to the publisher
+         */
+        boolean complete(EventSubscription<?> subscription, Event event, long durationNanos, Throwable error,
+                         boolean isTrial) {
+            if (error == null && durationNanos <= slowThresholdNanos) {
+                if (isTrial) {
+                    violations.set(0);
+                    quarantined = false;
+                    trial.set(false);
+
+                    reporter.recovered(subscription);
+                } else if (violations.get() != 0) {
+                    violations.set(0);
+                }
+
+                return false;
+            }
+
+            reporter.violation(subscription, event, durationNanos, error);
+
+            if (action == Action.QUARANTINE) {
+                if (isTrial) {
+                    // trial has failed
+                    quarantinedUntil = System.nanoTime() + quarantineNanos;
+                    trial.set(false);
+                } else if (quarantined) {
+                    // invocation was started before the quarantine
+                    return false;
+                } else if (violations.incrementAndGet() >= maxViolations) {
+                    quarantinedUntil = System.nanoTime() + quarantineNanos;
+                    quarantined = true;
+
+                    reporter.quarantined(subscription);
+                }
+            }
+
+            return action == Action.LOG;
+        }
+
+    }
+
+}
@@ -16,6 +16,8 @@
 
 package com.github.lero4ka16.ef4j;
 
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
 /**
  * @author lero4ka16
  */
@@ -41,4 +43,31 @@ public interface EventListener<E extends Event> {
         }
     }
 
+    class Confined<E extends Event> implements EventListener<E> {
+
+        @SuppressWarnings("rawtypes")
+        private static final AtomicReferenceFieldUpdater<Confined, Thread> OWNER =
+                AtomicReferenceFieldUpdater.newUpdater(Confined.class, Thread.class, "owner");
+
+        private final EventListener<E> listener;
+
+        private volatile Thread owner;
+
+        public Confined(EventListener<E> listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void handle(E event) {
+            Thread current = Thread.currentThread();
+
+            if (owner != current && !OWNER.compareAndSet(this, null, current)) {
+                throw new IllegalStateException("Listener is confined to " + owner.getName()
+                        + ", but called from " + current.getName());
+            }
+
+            listener.handle(event);
+        }
+    }
+
 }
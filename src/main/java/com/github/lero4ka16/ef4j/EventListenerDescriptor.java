@@ -0,0 +1,291 @@
+/*
+ *    Copyright 2021 Lero4ka16
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.github.lero4ka16.ef4j;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Handlers of the listener class, they are resolved only once per class,
+ * so subscribing another instance of the same class only binds the receiver.
+ *
+ * @author lero4ka16
+ */
+@SuppressWarnings({"rawtypes", "unchecked"})
+final class EventListenerDescriptor {
+
+    private static final ClassValue<EventListenerDescriptor> DESCRIPTORS = new ClassValue<EventListenerDescriptor>() {
+        @Override
+        protected EventListenerDescriptor computeValue(Class<?> type) {
+            EventRegistrar<?> registrar = findRegistrar(type);
+
+            return new EventListenerDescriptor(registrar != null
+                    ? registerHandlers(registrar)
+                    : resolveHandlers(type));
+        }
+    };
+
+    private final List<Handler> handlers;
+
+    private EventListenerDescriptor(List<Handler> handlers) {
+        this.handlers = handlers;
+    }
+
+    public static EventListenerDescriptor of(Class<?> type) {
+        return DESCRIPTORS.get(type);
+    }
+
+    public List<Handler> getHandlers() {
+        return handlers;
+    }
+
+    private static EventRegistrar<?> findRegistrar(Class<?> type) {
+        Class<?> registrarType;
+
+        try {
+            registrarType = Class.forName(type.getName() + EventRegistrar.SUFFIX, true, type.getClassLoader());
+        } catch (ClassNotFoundException | LinkageError e) {
+            return null;
+        }
+
+        if (!EventRegistrar.class.isAssignableFrom(registrarType)) {
+            return null;
+        }
+
+        try {
+            return (EventRegistrar<?>) registrarType.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // registrar is unusable, handlers are resolved using reflection
+            return null;
+        }
+    }
+
+    private static List<Handler> registerHandlers(EventRegistrar registrar) {
+        List<Handler> handlers = new ArrayList<>();
+
+        registrar.register((type, priority, concurrent, ignoreCancelled, factory) -> handlers.add(new Handler(
+                (Class<? extends Event>) type, priority, concurrent, ignoreCancelled, factory
+        )));
+
+        return Collections.unmodifiableList(handlers);
+    }
+
+    private static List<Handler> resolveHandlers(Class<?> cls) {
+        List<Handler> handlers = new ArrayList<>();
+
+        for (Method method : cls.getMethods()) {
+            EventHandler handler = method.getAnnotation(EventHandler.class);
+
+            if (handler == null) {
+                continue;
+            }
+
+            Class<?>[] params = method.getParameterTypes();
+
+            if (params.length != 1 || !(isEventInterface(params[0]) || Event.class.isAssignableFrom(params[0]))) {
+                throw new IllegalStateException("Wrong parameter types");
+            }
+
+            Type param = method.getGenericParameterTypes()[0];
+
+            if (param instanceof ParameterizedType) {
+                throw new IllegalStateException("Generic as parameter is illegal");
+            }
+
+            Class<? extends Event> eventType = (Class<? extends Event>) params[0];
+
+            Function<Object, EventListener<?>> factory;
+
+            try {
+                MethodHandles.Lookup lookup = PrivateLookup.privateIn(method.getDeclaringClass());
+
+                MethodType type = MethodType.methodType(void.class, eventType);
+                MethodHandle handle = lookup.findVirtual(method.getDeclaringClass(), method.getName(), type);
+
+                if (eventType.isInterface()) {
+                    // LambdaMetafactory can't implement EventListener with a non-Event parameter
+                    MethodHandle erased = handle.asType(MethodType.methodType(void.class, Object.class, Event.class));
+
+                    factory = listener -> new InterfaceListener(erased.bindTo(listener));
+                } else {
+                    CallSite callSite = LambdaMetafactory.metafactory(
+                            lookup, "handle",
+                            MethodType.methodType(EventListener.class, method.getDeclaringClass()),
+                            MethodType.methodType(void.class, Event.class),
+                            handle, type
+                    );
+
+                    factory = new LambdaFactory(callSite.getTarget()
+                            .asType(MethodType.methodType(EventListener.class, Object.class)));
+                }
+            } catch (Throwable t) {
+                throw new RuntimeException(t);
+            }
+
+            handlers.add(new Handler(eventType, handler.value(), handler.concurrent(), handler.ignoreCancelled(),
+                    factory));
+        }
+
+        return Collections.unmodifiableList(handlers);
+    }
+
+    /**
+     * Interfaces of the JDK, like {@link Runnable}, are not events, even if some event implements them
+     */
+    private static boolean isEventInterface(Class<?> type) {
+        if (!type.isInterface()) {
+            return false;
+        }
+
+        String name = type.getName();
+        return !name.startsWith("java.") && !name.startsWith("javax.") && !name.startsWith("jdk.");
+    }
+
+    static final class Handler {
+
+        private final Class<? extends Event> type;
+
+        private final EventPriority priority;
+        private final boolean concurrent;
+        private final boolean ignoreCancelled;
+
+        private final Function<Object, EventListener<?>> factory;
+
+        private Handler(Class<? extends Event> type, EventPriority priority, boolean concurrent,
+                        boolean ignoreCancelled, Function<Object, EventListener<?>> factory) {
+            this.type = type;
+            this.priority = priority;
+            this.concurrent = concurrent;
+            this.ignoreCancelled = ignoreCancelled;
+            this.factory = factory;
+        }
+
+        public Class<? extends Event> getType() {
+            return type;
+        }
+
+        public EventPriority getPriority() {
+            return priority;
+        }
+
+        public boolean isConcurrent() {
+            return concurrent;
+        }
+
+        public boolean isIgnoreCancelled() {
+            return ignoreCancelled;
+        }
+
+        public EventListener<?> bind(Object listener) {
+            return factory.apply(listener);
+        }
+    }
+
+    private static final class LambdaFactory implements Function<Object, EventListener<?>> {
+
+        /**
+         * (Object)EventListener, creates a lambda bound to the listener
+         */
+        private final MethodHandle factory;
+
+        private LambdaFactory(MethodHandle factory) {
+            this.factory = factory;
+        }
+
+        @Override
+        public EventListener<?> apply(Object listener) {
+            try {
+                return (EventListener<?>) factory.invokeExact(listener);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new RuntimeException(t);
+            }
+        }
+    }
+
+    private static final class InterfaceListener implements EventListener<Event> {
+
+        private final MethodHandle handle;
+
+        private InterfaceListener(MethodHandle handle) {
+            this.handle = handle;
+        }
+
+        @Override
+        public void handle(Event event) {
+            try {
+                handle.invokeExact(event);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new RuntimeException(t);
+            }
+        }
+    }
+
+    private static class PrivateLookup {
+        private static final MethodHandles.Lookup INTERNAL;
+        private static final Method PRIVATE_LOOKUP_IN;
+
+        static {
+            MethodHandles.Lookup internal = null;
+            Method privateLookupIn = null;
+
+            try {
+                privateLookupIn = MethodHandles.class.getDeclaredMethod("privateLookupIn",
+                        Class.class, MethodHandles.Lookup.class);
+            } catch (NoSuchMethodException e) {
+                try {
+                    Field field = MethodHandles.Lookup.class.getDeclaredField("IMPL_LOOKUP");
+                    field.setAccessible(true);
+
+                    internal = (MethodHandles.Lookup) field.get(null);
+                } catch (Exception ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+
+            INTERNAL = internal;
+            PRIVATE_LOOKUP_IN = privateLookupIn;
+        }
+
+        public static MethodHandles.Lookup privateIn(Class<?> cls) {
+            if (INTERNAL == null) {
+                try {
+                    return (MethodHandles.Lookup) PRIVATE_LOOKUP_IN.invoke(null, cls, MethodHandles.lookup());
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            } else {
+                return INTERNAL.in(cls);
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ *    Copyright 2021 Lero4ka16
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.github.lero4ka16.ef4j;
+
+/**
+ * Defines which lock is used to execute handlers, that are not
+ * {@link EventHandler#concurrent()}, in the thread safe bus
+ *
+ * @author lero4ka16
+ */
+public enum EventLockMode {
+
+    /**
+     * Single lock for the whole bus, so all handlers are executed one after another
+     */
+    BUS,
+
+    /**
+     * Listener object is used as lock, so handlers of the same listener
+     * are executed one after another
+     */
+    LISTENER,
+
+    /**
+     * Each handler has its own lock
+     */
+    SUBSCRIPTION,
+
+    /**
+     * Listener objects are spread over a fixed pool of locks
+     */
+    STRIPED,
+
+    /**
+     * No lock at all, handler must be called only from the one thread,
+     * otherwise {@link IllegalStateException} is thrown
+     */
+    CONFINED
+
+}
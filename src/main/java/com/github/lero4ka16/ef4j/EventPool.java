@@ -0,0 +1,140 @@
+/*
+ *    Copyright 2021 Lero4ka16
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.github.lero4ka16.ef4j;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * Lock-free pool of events of the same type.
+ * <p>
+ * Event obtained by {@link #acquire()} is automatically returned to the pool after it is published:
+ * right after {@link EventPriority#MONITOR} handlers, or for {@link AsyncEvent} after all its intents
+ * are done. So pooled event must not be used after that, debug mode helps to detect such usages,
+ * see {@link Event#ensureNotRecycled()}.
+ *
+ * @author lero4ka16
+ */
+public final class EventPool<E extends Event & Recyclable> {
+
+    private final Supplier<E> factory;
+
+    private final AtomicReferenceArray<E> slots;
+    private final int mask;
+
+    /**
+     * Events, that are returned to the pool, {@code null} if debug mode is disabled
+     */
+    private final Set<Event> recycled;
+
+    public EventPool(Supplier<E> factory) {
+        this(factory, 64, false);
+    }
+
+    /**
+     * @param factory  factory for new events, used when pool is empty
+     * @param capacity maximum number of pooled events, rounded up to a power of two
+     * @param debug    detect usages of the event after it is returned to the pool
+     */
+    public EventPool(Supplier<E> factory, int capacity, boolean debug) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+
+        this.factory = factory;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.recycled = debug ? Collections.newSetFromMap(Collections.synchronizedMap(new IdentityHashMap<>())) : null;
+    }
+
+    /**
+     * Takes an event from the pool or creates the new one, if pool is empty
+     */
+    public E acquire() {
+        int start = probe();
+
+        for (int i = 0; i <= mask; i++) {
+            int index = (start + i) & mask;
+
+            if (slots.get(index) == null) {
+                continue;
+            }
+
+            E event = slots.getAndSet(index, null);
+
+            if (event != null) {
+                if (recycled != null) {
+                    recycled.remove(event);
+                }
+
+                return event;
+            }
+        }
+
+        E event = factory.get();
+        event.pool = this;
+
+        return event;
+    }
+
+    /**
+     * Returns an event to the pool, event is dropped if pool is full
+     */
+    public void release(E event) {
+        if (event.pool != this) {
+            throw new IllegalArgumentException("Event isn't owned by this pool");
+        }
+
+        if (recycled != null && !recycled.add(event)) {
+            throw new IllegalStateException("Event is already recycled");
+        }
+
+        event.recycle();
+        event.resetState();
+
+        int start = probe();
+
+        for (int i = 0; i <= mask; i++) {
+            int index = (start + i) & mask;
+
+            if (slots.get(index) == null && slots.compareAndSet(index, null, event)) {
+                return;
+            }
+        }
+    }
+
+    boolean isRecycled(Event event) {
+        return recycled != null && recycled.contains(event);
+    }
+
+    @SuppressWarnings("unchecked")
+    void releaseUnchecked(Event event) {
+        release((E) event);
+    }
+
+    private int probe() {
+        long id = Thread.currentThread().getId();
+        return (int) (id ^ (id >>> 16)) & mask;
+    }
+
+}
@@ -0,0 +1,44 @@
+/*
+ *    Copyright 2021 Lero4ka16
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.github.lero4ka16.ef4j;
+
+import java.util.function.Function;
+
+/**
+ * Describes handlers of the listener class without reflection.
+ * <p>
+ * Implementations are generated by {@code ef4j-processor} and named
+ * as binary name of the listener class followed by {@link #SUFFIX},
+ * {@link EventBus#subscribe(Object)} uses them when they are present.
+ *
+ * @author lero4ka16
+ */
+public interface EventRegistrar<L> {
+
+    String SUFFIX = "$$EventRegistrar";
+
+    void register(Handlers<L> handlers);
+
+    interface Handlers<L> {
+
+        void add(Class<?> type, EventPriority priority, boolean concurrent, boolean ignoreCancelled,
+                 Function<L, EventListener<?>> factory);
+
+    }
+
+}
@@ -30,16 +30,47 @@ public final class EventSubscription<E extends Event> implements EventListener<E
     private final EventListener<E> listener;
 
     private final boolean ignoreCancelled;
+    private final boolean concurrent;
+
+    private final Object routingKey;
+
+    /**
+     * Set by the bus before registration, if metrics are enabled
+     */
+    EventBusMetrics.SubscriptionMetrics metrics;
+
+    /**
+     * Set by the bus before registration, if fault policy is enabled
+     */
+    EventFaultPolicy.Guard guard;
 
     public EventSubscription(EventBus bus, EventNamespace namespace, EventPriority priority,
                              Class<E> type, EventListener<E> listener,
                              boolean ignoreCancelled) {
+        this(bus, namespace, priority, type, listener, ignoreCancelled, false);
+    }
+
+    public EventSubscription(EventBus bus, EventNamespace namespace, EventPriority priority,
+                             Class<E> type, EventListener<E> listener,
+                             boolean ignoreCancelled, boolean concurrent) {
+        this(bus, namespace, priority, type, listener, ignoreCancelled, concurrent, null);
+    }
+
+    /**
+     * @param routingKey key of {@link Routable} events, that are handled by the subscription,
+     *                   or {@code null} to handle events of any key
+     */
+    public EventSubscription(EventBus bus, EventNamespace namespace, EventPriority priority,
+                             Class<E> type, EventListener<E> listener,
+                             boolean ignoreCancelled, boolean concurrent, Object routingKey) {
         this.bus = bus;
         this.namespace = namespace;
         this.type = type;
         this.priority = priority;
         this.listener = listener;
         this.ignoreCancelled = ignoreCancelled;
+        this.concurrent = concurrent;
+        this.routingKey = routingKey;
     }
 
     public EventPriority getPriority() {
@@ -58,6 +89,25 @@ public final class EventSubscription<E extends Event> implements EventListener<E
         return type;
     }
 
+    public boolean isIgnoreCancelled() {
+        return ignoreCancelled;
+    }
+
+    /**
+     * @return true, if handler is marked as {@link EventHandler#concurrent()}
+     */
+    public boolean isConcurrent() {
+        return concurrent;
+    }
+
+    /**
+     * @return key of {@link Routable} events, that are handled by the subscription,
+     * or {@code null} if it handles events of any key
+     */
+    public Object getRoutingKey() {
+        return routingKey;
+    }
+
     public void unsubscribe() {
         bus.unsubscribe(this);
     }
@@ -73,7 +123,61 @@ public final class EventSubscription<E extends Event> implements EventListener<E
             }
         }
 
-        listener.handle(event);
+        EventFaultPolicy.Guard guard = this.guard;
+
+        int permit = guard != null ? guard.tryAcquire() : EventFaultPolicy.Guard.ACQUIRED;
+
+        if (permit == EventFaultPolicy.Guard.DENIED) {
+            return;
+        }
+
+        EventBusMetrics.SubscriptionMetrics metrics = this.metrics;
+        Object trace = EventTracer.INSTANCE.beginHandle();
+
+        if (metrics == null && trace == null && guard == null) {
+            listener.handle(event);
+            return;
+        }
+
+        long start = System.nanoTime();
+        Throwable error = null;
+
+        try {
+            listener.handle(event);
+        } catch (Throwable e) {
+            error = e;
+        }
+
+        long duration = System.nanoTime() - start;
+
+        if (metrics != null) {
+            if (error != null) {
+                metrics.fail();
+            }
+
+            metrics.record(duration);
+        }
+
+        if (trace != null) {
+            EventTracer.INSTANCE.endHandle(trace, this);
+        }
+
+        boolean isTrial = permit == EventFaultPolicy.Guard.TRIAL;
+
+        // errors of the JVM are never swallowed
+        if (guard != null && !guard.complete(this, event, duration, error, isTrial)
+                && !(error instanceof VirtualMachineError || error instanceof LinkageError)) {
+            return;
+        }
+
+        if (error != null) {
+            throw EventSubscription.<RuntimeException>sneakyThrow(error);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Throwable> T sneakyThrow(Throwable error) throws T {
+        throw (T) error;
     }
 
     @Override
@@ -16,220 +16,560 @@
 
 package com.github.lero4ka16.ef4j;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.UnaryOperator;
 
 /**
  * @author lero4ka16
  */
 final class EventSubscriptionStorage<E extends Event> {
 
-    private volatile InternalStorage<E> storage = new SingletonStorage<>();
+    private volatile Snapshot<E> snapshot = Snapshot.empty();
 
-    public synchronized int getSize() {
-        return storage.getSize();
+    public int getSize() {
+        return snapshot.getSize();
     }
 
-    public void publish(E event) {
-        storage.publish(event);
+    /**
+     * Returns immutable view of the subscriptions, mutations never change
+     * the returned snapshot, so it can be safely used by the publisher
+     * for both {@link Snapshot#publish} and {@link Snapshot#postPublish}
+     */
+    public Snapshot<E> getSnapshot() {
+        return snapshot;
     }
 
-    public void postPublish(E event) {
-        storage.postPublish(event);
+    public synchronized void add(EventSubscription<E> subscription) {
+        snapshot = snapshot.add(subscription);
     }
 
-    public synchronized void add(EventSubscription<E> subscription) {
-        int size = storage.getSize();
+    public synchronized void remove(EventSubscription<E> subscription) {
+        snapshot = snapshot.remove(subscription);
+    }
 
-        if (size == 1) {
-            InternalStorage<E> oldStorage = storage;
-            storage = new ArrayStorage<>();
-            oldStorage.migrate(storage);
+    /**
+     * Applies all changes at once, result is the same as of adding and then removing subscriptions one by one
+     *
+     * @param added   subscriptions to add, in order they were added
+     * @param removed subscriptions to remove
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized void update(List<EventSubscription<E>> added, Set<EventSubscription<?>> removed) {
+        // single change doesn't need sorting
+        if (removed.isEmpty() && added.size() == 1) {
+            snapshot = snapshot.add(added.get(0));
+        } else if (added.isEmpty() && removed.size() == 1) {
+            snapshot = snapshot.remove((EventSubscription<E>) removed.iterator().next());
+        } else {
+            snapshot = snapshot.update(added, removed);
         }
-
-        storage.add(subscription);
     }
 
-    public synchronized void remove(EventSubscription<E> subscription) {
-        storage.remove(subscription);
+    @SuppressWarnings("unchecked")
+    static final class Snapshot<E extends Event> {
+
+        private static final Snapshot<?> EMPTY = new Snapshot<>(new EventSubscription[0], 0,
+                Collections.emptyMap(), 0);
+
+        /**
+         * Subscriptions without routing key
+         */
+        private final EventSubscription<E>[] subscriptions;
+        private final int monitorOffset;
 
-        int size = storage.getSize();
+        private final boolean hasConcurrent;
 
-        if (size <= 1) {
-            InternalStorage<E> oldStorage = storage;
-            storage = new SingletonStorage<>();
+        /**
+         * Snapshots by routing key, each contains subscriptions of the key and all subscriptions without key
+         */
+        private final Map<Object, Snapshot<E>> routes;
+        private final int routedSize;
 
-            if (size == 1) {
-                oldStorage.migrate(storage);
+        private Snapshot(EventSubscription<E>[] subscriptions, int monitorOffset,
+                         Map<Object, Snapshot<E>> routes, int routedSize) {
+            this.subscriptions = subscriptions;
+            this.monitorOffset = monitorOffset;
+            this.routes = routes;
+            this.routedSize = routedSize;
+
+            boolean hasConcurrent = false;
+
+            for (int i = 0; i < monitorOffset; i++) {
+                if (subscriptions[i].isConcurrent()) {
+                    hasConcurrent = true;
+                    break;
+                }
             }
+
+            this.hasConcurrent = hasConcurrent;
         }
-    }
 
-    interface InternalStorage<E extends Event> {
-        int getSize();
+        static <E extends Event> Snapshot<E> empty() {
+            return (Snapshot<E>) EMPTY;
+        }
 
-        void add(EventSubscription<E> subscription);
+        /**
+         * @return number of all subscriptions including subscriptions with routing key
+         */
+        public int getSize() {
+            return subscriptions.length + routedSize;
+        }
 
-        void remove(EventSubscription<E> subscription);
+        /**
+         * @return snapshot, that contains subscriptions for the given event
+         */
+        public Snapshot<E> route(E event) {
+            if (routes.isEmpty() || !(event instanceof Routable)) {
+                return this;
+            }
 
-        void migrate(InternalStorage<E> storage);
+            Snapshot<E> route = routes.get(((Routable) event).getRoutingKey());
+            return route != null ? route : this;
+        }
 
-        void publish(E event);
+        /**
+         * @return snapshot of subscriptions without routing key
+         */
+        private Snapshot<E> unrouted() {
+            return routes.isEmpty() ? this : new Snapshot<>(subscriptions, monitorOffset, Collections.emptyMap(), 0);
+        }
 
-        void postPublish(E event);
+        public void publish(E event) {
+            EventSubscription<E>[] subscriptions = this.subscriptions;
 
-        default boolean isEmpty() {
-            return getSize() == 0;
+            for (int i = 0, j = monitorOffset; i < j; i++) {
+                subscriptions[i].handle(event);
+            }
         }
-    }
 
-    @SuppressWarnings("unchecked")
-    static class ArrayStorage<E extends Event> implements InternalStorage<E> {
-        private volatile EventSubscription<E>[] content = new EventSubscription[8];
+        /**
+         * @return true, if there are {@link EventHandler#concurrent()} handlers before monitor
+         */
+        public boolean hasConcurrent() {
+            return hasConcurrent;
+        }
 
-        private volatile int size;
-        private volatile int monitorOffset;
+        /**
+         * Same as {@link #publish(Event)}, but concurrent handlers are executed using the executor,
+         * method returns after all of them are done
+         */
+        public void publish(E event, Executor executor) {
+            EventSubscription<E>[] subscriptions = this.subscriptions;
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+            try {
+                for (int i = 0, j = monitorOffset; i < j; i++) {
+                    EventSubscription<E> subscription = subscriptions[i];
+
+                    if (subscription.isConcurrent()) {
+                        futures.add(CompletableFuture.runAsync(() -> subscription.handle(event), executor));
+                    } else {
+                        subscription.handle(event);
+                    }
+                }
+            } catch (Throwable e) {
+                // already started handlers must not outlive the publish
+                try {
+                    CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+                } catch (CompletionException concurrent) {
+                    e.addSuppressed(concurrent.getCause());
+                }
 
-        @Override
-        public void publish(E event) {
-            for (int i = 0; i < monitorOffset; i++) {
-                EventSubscription<E> listener = content[i];
+                throw e;
+            }
+
+            try {
+                CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
 
-                if (listener != null) {
-                    listener.handle(event);
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
                 }
+
+                throw e;
             }
         }
 
-        @Override
         public void postPublish(E event) {
-            for (int i = monitorOffset; i < size; i++) {
-                EventSubscription<E> listener = content[i];
+            EventSubscription<E>[] subscriptions = this.subscriptions;
 
-                if (listener != null) {
-                    listener.handle(event);
-                }
+            for (int i = monitorOffset, j = subscriptions.length; i < j; i++) {
+                subscriptions[i].handle(event);
             }
         }
 
-        @Override
-        public int getSize() {
-            return size;
-        }
+        /**
+         * Merges snapshots into the single one, subscriptions with the same priority
+         * are kept in order of given snapshots
+         */
+        static <E extends Event> Snapshot<E> merge(List<Snapshot<E>> snapshots) {
+            Snapshot<E> single = null;
+            int size = 0;
+
+            for (Snapshot<E> snapshot : snapshots) {
+                if (snapshot.getSize() == 0) {
+                    continue;
+                }
 
-        @Override
-        public synchronized void add(EventSubscription<E> subscription) {
-            if (size >= content.length) {
-                content = Arrays.copyOf(content, size + 1);
+                single = size == 0 ? snapshot : null;
+                size += snapshot.getSize();
             }
 
-            for (int i = 0; i < size; i++) {
-                EventSubscription<E> at = content[i];
+            if (size == 0) {
+                return empty();
+            }
 
-                if (content != null && at.compareTo(subscription) < 0) {
-                    continue;
+            if (single != null) {
+                return single;
+            }
+
+            int unroutedSize = 0;
+            int routedSize = 0;
+
+            Set<Object> keys = new LinkedHashSet<>();
+
+            for (Snapshot<E> snapshot : snapshots) {
+                unroutedSize += snapshot.subscriptions.length;
+                routedSize += snapshot.routedSize;
+
+                keys.addAll(snapshot.routes.keySet());
+            }
+
+            EventSubscription<E>[] result = new EventSubscription[unroutedSize];
+            int monitorOffset = 0;
+            int index = 0;
+
+            for (Snapshot<E> snapshot : snapshots) {
+                System.arraycopy(snapshot.subscriptions, 0, result, index, snapshot.subscriptions.length);
+                index += snapshot.subscriptions.length;
+                monitorOffset += snapshot.monitorOffset;
+            }
+
+            // merge sort is stable
+            Arrays.sort(result);
+
+            if (keys.isEmpty()) {
+                return new Snapshot<>(result, monitorOffset, Collections.emptyMap(), 0);
+            }
+
+            Map<Object, Snapshot<E>> routes = new HashMap<>();
+
+            for (Object key : keys) {
+                List<Snapshot<E>> routeSnapshots = new ArrayList<>(snapshots.size());
+
+                for (Snapshot<E> snapshot : snapshots) {
+                    routeSnapshots.add(snapshot.routes.getOrDefault(key, snapshot.unrouted()));
                 }
 
-                System.arraycopy(content, i, content, i + 1, content.length - i - 1);
+                routes.put(key, merge(routeSnapshots));
+            }
+
+            return new Snapshot<>(result, monitorOffset, routes, routedSize);
+        }
+
+        Snapshot<E> add(EventSubscription<E> subscription) {
+            Object key = subscription.getRoutingKey();
 
-                setSubscription(i, subscription);
-                return;
+            if (key == null) {
+                return new Snapshot<>(insert(subscription), monitorOffset(subscription, 1),
+                        updateRoutes(route -> route.addToRoute(subscription)), routedSize);
             }
 
-            setSubscription(size, subscription);
+            Map<Object, Snapshot<E>> routes = new HashMap<>(this.routes);
+            routes.put(key, routes.getOrDefault(key, unrouted()).addToRoute(subscription));
+
+            return new Snapshot<>(subscriptions, monitorOffset, routes, routedSize + 1);
         }
 
-        private synchronized void setSubscription(int index, EventSubscription<E> subscription) {
-            content[index] = subscription;
+        Snapshot<E> remove(EventSubscription<E> subscription) {
+            Object key = subscription.getRoutingKey();
+
+            if (key == null) {
+                EventSubscription<E>[] result = delete(subscription);
+
+                if (result == subscriptions) {
+                    return this;
+                }
+
+                if (result.length == 0 && routedSize == 0) {
+                    return empty();
+                }
+
+                return new Snapshot<>(result, monitorOffset(subscription, -1),
+                        updateRoutes(route -> route.removeFromRoute(subscription)), routedSize);
+            }
+
+            Snapshot<E> route = routes.get(key);
 
-            if (subscription.getPriority() != EventPriority.MONITOR) {
-                monitorOffset++;
+            if (route == null) {
+                return this;
             }
 
-            size++;
+            Snapshot<E> updatedRoute = route.removeFromRoute(subscription);
+
+            if (updatedRoute == route) {
+                return this;
+            }
+
+            if (routedSize == 1 && subscriptions.length == 0) {
+                return empty();
+            }
+
+            Map<Object, Snapshot<E>> routes = new HashMap<>(this.routes);
+
+            if (updatedRoute.getSize() == subscriptions.length) {
+                // no more subscriptions of the key
+                routes.remove(key);
+            } else {
+                routes.put(key, updatedRoute);
+            }
+
+            return new Snapshot<>(subscriptions, monitorOffset, routes.isEmpty() ? Collections.emptyMap() : routes,
+                    routedSize - 1);
         }
 
-        @Override
-        public synchronized void remove(EventSubscription<E> subscription) {
-            if (content == null) {
-                return;
+        /**
+         * Rebuilds only the changed parts of the snapshot, routes are rebuilt only if they are
+         * affected by changed subscriptions, or if subscriptions without routing key are changed
+         */
+        Snapshot<E> update(List<EventSubscription<E>> added, Set<EventSubscription<?>> removed) {
+            List<EventSubscription<E>> addedUnrouted = new ArrayList<>();
+            Map<Object, List<EventSubscription<E>>> addedRouted = new LinkedHashMap<>();
+
+            for (EventSubscription<E> subscription : added) {
+                Object key = subscription.getRoutingKey();
+
+                if (key == null) {
+                    addedUnrouted.add(subscription);
+                } else {
+                    addedRouted.computeIfAbsent(key, $ -> new ArrayList<>()).add(subscription);
+                }
             }
 
-            for (int i = 0; i < size; i++) {
-                EventListener<E> listener = content[i];
+            boolean unroutedChanged = !addedUnrouted.isEmpty() || containsAny(subscriptions, removed);
 
-                if (listener == subscription) {
-                    size--;
-                    content[i] = null;
+            EventSubscription<E>[] unrouted = unroutedChanged
+                    ? rebuild(subscriptions, removed, addedUnrouted)
+                    : subscriptions;
 
-                    if (i != size) {
-                        System.arraycopy(content, i + 1, content, i, content.length - i - 1);
-                    }
+            Set<Object> keys = new LinkedHashSet<>();
+
+            if (unroutedChanged) {
+                keys.addAll(this.routes.keySet());
+            } else if (!this.routes.isEmpty()) {
+                for (EventSubscription<?> subscription : removed) {
+                    Object key = subscription.getRoutingKey();
 
-                    if (subscription.getPriority() != EventPriority.MONITOR) {
-                        monitorOffset--;
+                    if (key != null && this.routes.containsKey(key)) {
+                        keys.add(key);
                     }
+                }
+            }
 
-                    break;
+            keys.addAll(addedRouted.keySet());
+
+            if (!unroutedChanged && keys.isEmpty()) {
+                return this;
+            }
+
+            // unchanged routes are shared with this snapshot
+            Map<Object, Snapshot<E>> routes = new HashMap<>(this.routes);
+            int routedSize = this.routedSize;
+
+            for (Object key : keys) {
+                Snapshot<E> route = this.routes.get(key);
+
+                if (route != null) {
+                    routedSize -= route.subscriptions.length - subscriptions.length;
+                }
+
+                EventSubscription<E>[] result = rebuild(route != null ? route.subscriptions : subscriptions,
+                        removed, addedToRoute(added, addedUnrouted, addedRouted.get(key)));
+
+                if (result.length > unrouted.length) {
+                    routes.put(key, new Snapshot<>(result, monitorOffset(result), Collections.emptyMap(), 0));
+                    routedSize += result.length - unrouted.length;
+                } else {
+                    routes.remove(key);
                 }
             }
+
+            if (unrouted.length == 0 && routedSize == 0) {
+                return empty();
+            }
+
+            return new Snapshot<>(unrouted, unroutedChanged ? monitorOffset(unrouted) : monitorOffset,
+                    routes.isEmpty() ? Collections.emptyMap() : routes, routedSize);
         }
 
-        @Override
-        public synchronized void migrate(InternalStorage<E> storage) {
-            for (int i = 0; i < size; i++) {
-                EventSubscription<E> subscription = content[i];
+        /**
+         * @return added subscriptions of the route in order they were added
+         */
+        private static <E extends Event> List<EventSubscription<E>> addedToRoute(
+                List<EventSubscription<E>> added,
+                List<EventSubscription<E>> addedUnrouted,
+                List<EventSubscription<E>> addedRouted) {
+            if (addedRouted == null) {
+                return addedUnrouted;
+            }
 
-                if (subscription != null) {
-                    storage.add(subscription);
+            if (addedUnrouted.isEmpty()) {
+                return addedRouted;
+            }
+
+            Object key = addedRouted.get(0).getRoutingKey();
+            List<EventSubscription<E>> result = new ArrayList<>();
+
+            for (EventSubscription<E> subscription : added) {
+                Object subscriptionKey = subscription.getRoutingKey();
+
+                if (subscriptionKey == null || subscriptionKey.equals(key)) {
+                    result.add(subscription);
                 }
             }
+
+            return result;
         }
-    }
 
-    static class SingletonStorage<E extends Event> implements InternalStorage<E> {
+        private static boolean containsAny(EventSubscription<?>[] subscriptions, Set<EventSubscription<?>> removed) {
+            if (removed.isEmpty()) {
+                return false;
+            }
 
-        private volatile EventSubscription<E> subscription;
+            for (EventSubscription<?> subscription : subscriptions) {
+                if (removed.contains(subscription)) {
+                    return true;
+                }
+            }
 
-        @Override
-        public void publish(E event) {
-            if (subscription != null && subscription.getPriority() != EventPriority.MONITOR) {
-                subscription.handle(event);
+            return false;
+        }
+
+        private static <E extends Event> EventSubscription<E>[] rebuild(EventSubscription<E>[] subscriptions,
+                                                                        Set<EventSubscription<?>> removed,
+                                                                        List<EventSubscription<E>> added) {
+            List<EventSubscription<E>> result = new ArrayList<>(subscriptions.length + added.size());
+
+            for (EventSubscription<E> subscription : subscriptions) {
+                if (!removed.contains(subscription)) {
+                    result.add(subscription);
+                }
             }
+
+            for (EventSubscription<E> subscription : added) {
+                if (!removed.contains(subscription)) {
+                    result.add(subscription);
+                }
+            }
+
+            EventSubscription<E>[] array = result.toArray(new EventSubscription[0]);
+
+            // merge sort is stable, so new subscriptions are placed after existing ones of the same priority
+            Arrays.sort(array);
+
+            return array;
         }
 
-        @Override
-        public void postPublish(E event) {
-            if (subscription != null && subscription.getPriority() == EventPriority.MONITOR) {
-                subscription.handle(event);
+        private static int monitorOffset(EventSubscription<?>[] subscriptions) {
+            int monitorOffset = 0;
+
+            for (EventSubscription<?> subscription : subscriptions) {
+                if (subscription.getPriority() != EventPriority.MONITOR) {
+                    monitorOffset++;
+                }
             }
+
+            return monitorOffset;
+        }
+
+        /**
+         * Adds subscription to the snapshot of the single route, regardless of its key
+         */
+        private Snapshot<E> addToRoute(EventSubscription<E> subscription) {
+            return new Snapshot<>(insert(subscription), monitorOffset(subscription, 1), Collections.emptyMap(), 0);
+        }
+
+        private Snapshot<E> removeFromRoute(EventSubscription<E> subscription) {
+            EventSubscription<E>[] result = delete(subscription);
+
+            return result != subscriptions
+                    ? new Snapshot<>(result, monitorOffset(subscription, -1), Collections.emptyMap(), 0)
+                    : this;
         }
 
-        @Override
-        public synchronized int getSize() {
-            return subscription == null ? 0 : 1;
+        private int monitorOffset(EventSubscription<E> subscription, int delta) {
+            return subscription.getPriority() != EventPriority.MONITOR
+                    ? monitorOffset + delta
+                    : monitorOffset;
         }
 
-        @Override
-        public synchronized void add(EventSubscription<E> subscription) {
-            if (this.subscription != null) {
-                throw new IllegalStateException("Singleton is full");
+        private Map<Object, Snapshot<E>> updateRoutes(UnaryOperator<Snapshot<E>> update) {
+            if (routes.isEmpty()) {
+                return routes;
+            }
+
+            Map<Object, Snapshot<E>> result = new HashMap<>();
+
+            for (Map.Entry<Object, Snapshot<E>> entry : routes.entrySet()) {
+                result.put(entry.getKey(), update.apply(entry.getValue()));
             }
 
-            this.subscription = subscription;
+            return result;
         }
 
-        @Override
-        public synchronized void remove(EventSubscription<E> subscription) {
-            if (this.subscription == subscription) {
-                this.subscription = null;
+        private EventSubscription<E>[] insert(EventSubscription<E> subscription) {
+            int size = subscriptions.length;
+            int index = size;
+
+            // subscriptions with the same priority are called in order they were added
+            for (int i = 0; i < size; i++) {
+                if (subscriptions[i].compareTo(subscription) > 0) {
+                    index = i;
+                    break;
+                }
             }
+
+            EventSubscription<E>[] result = new EventSubscription[size + 1];
+            System.arraycopy(subscriptions, 0, result, 0, index);
+            System.arraycopy(subscriptions, index, result, index + 1, size - index);
+            result[index] = subscription;
+
+            return result;
         }
 
-        @Override
-        public synchronized void migrate(InternalStorage<E> storage) {
-            if (subscription != null) {
-                storage.add(subscription);
+        /**
+         * @return subscriptions without the given one, or the same array if there is no such subscription
+         */
+        private EventSubscription<E>[] delete(EventSubscription<E> subscription) {
+            int size = subscriptions.length;
+
+            for (int i = 0; i < size; i++) {
+                if (subscriptions[i] != subscription) {
+                    continue;
+                }
+
+                EventSubscription<E>[] result = new EventSubscription[size - 1];
+                System.arraycopy(subscriptions, 0, result, 0, i);
+                System.arraycopy(subscriptions, i + 1, result, i, size - i - 1);
+
+                return result;
             }
+
+            return subscriptions;
         }
     }
 }
@@ -0,0 +1,97 @@
+/*
+ *    Copyright 2021 Lero4ka16
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.github.lero4ka16.ef4j;
+
+/**
+ * Records activity of the buses, implemented by {@link FlightRecorderEventTracer}
+ * if Java Flight Recorder is available
+ *
+ * @author lero4ka16
+ */
+interface EventTracer {
+
+    EventTracer INSTANCE = load();
+
+    /**
+     * @return trace, that must be passed to {@link #endPublish}, or {@code null} if recording is disabled
+     */
+    Object beginPublish();
+
+    void endPublish(Object trace, Event event, int subscribers);
+
+    /**
+     * @return trace, that must be passed to {@link #endHandle}, or {@code null} if recording is disabled
+     */
+    Object beginHandle();
+
+    void endHandle(Object trace, EventSubscription<?> subscription);
+
+    /**
+     * @return trace, that must be passed to {@link #endAsync}, or {@code null} if recording is disabled
+     */
+    Object beginAsync();
+
+    void endAsync(Object trace, AsyncEvent<?> event);
+
+    static EventTracer load() {
+        try {
+            // jdk.jfr is missing in old Java 8 builds and in runtimes without jdk.jfr module,
+            // tracer itself is loaded even then, because it is linked lazily
+            Class.forName("jdk.jfr.FlightRecorder");
+
+            return (EventTracer) Class.forName("com.github.lero4ka16.ef4j.FlightRecorderEventTracer")
+                    .getDeclaredConstructor()
+                    .newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return Noop.INSTANCE;
+        }
+    }
+
+    final class Noop implements EventTracer {
+
+        private static final Noop INSTANCE = new Noop();
+
+        @Override
+        public Object beginPublish() {
+            return null;
+        }
+
+        @Override
+        public void endPublish(Object trace, Event event, int subscribers) {
+        }
+
+        @Override
+        public Object beginHandle() {
+            return null;
+        }
+
+        @Override
+        public void endHandle(Object trace, EventSubscription<?> subscription) {
+        }
+
+        @Override
+        public Object beginAsync() {
+            return null;
+        }
+
+        @Override
+        public void endAsync(Object trace, AsyncEvent<?> event) {
+        }
+    }
+
+}
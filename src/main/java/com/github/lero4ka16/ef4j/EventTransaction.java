@@ -0,0 +1,49 @@
+/*
+ *    Copyright 2021 Lero4ka16
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.github.lero4ka16.ef4j;
+
+/**
+ * Changes of subscriptions, that are applied at once after {@link EventBus#batch} action completes.
+ * <p>
+ * Staged changes are not visible to publishers until then,
+ * and they are discarded if the action throws an exception.
+ *
+ * @author lero4ka16
+ */
+public interface EventTransaction {
+
+    EventObjectSubscription subscribe(Object listener);
+
+    EventObjectSubscription subscribe(EventNamespace namespace, Object listener);
+
+    EventObjectSubscription subscribe(EventNamespace namespace, Object listener, Object routingKey);
+
+    <E extends Event> EventSubscription<E> subscribe(EventNamespace namespace, Class<E> type,
+                                                     EventListener<E> listener, EventPriority priority,
+                                                     boolean ignoreCancelled);
+
+    void unsubscribe(EventSubscription<?> subscription);
+
+    void unsubscribe(EventObjectSubscription subscription);
+
+    /**
+     * Removes subscriptions of the namespace, including ones added by this transaction
+     */
+    void unsubscribeAll(EventNamespace namespace);
+
+}
@@ -0,0 +1,162 @@
+/*
+ *    Copyright 2021 Lero4ka16
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.github.lero4ka16.ef4j;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Emits JFR events, loaded only by {@link EventTracer#load()}
+ * and must not be referenced directly.
+ * <p>
+ * Publish events are disabled by default because of their volume, they can be enabled
+ * in recording settings with {@code com.github.lero4ka16.ef4j.Publish#enabled=true},
+ * the threshold of handler events is changed with {@code com.github.lero4ka16.ef4j.Handle#threshold}
+ *
+ * @author lero4ka16
+ */
+final class FlightRecorderEventTracer implements EventTracer {
+
+    // event classes are not touched until the recorder is started,
+    // because their registration initializes whole JFR
+
+    @Override
+    public Object beginPublish() {
+        if (!FlightRecorder.isInitialized()) {
+            return null;
+        }
+
+        PublishEvent event = new PublishEvent();
+
+        if (!event.isEnabled()) {
+            return null;
+        }
+
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endPublish(Object trace, Event event, int subscribers) {
+        PublishEvent publishEvent = (PublishEvent) trace;
+        publishEvent.eventType = event.getClass();
+        publishEvent.subscribers = subscribers;
+        publishEvent.commit();
+    }
+
+    @Override
+    public Object beginHandle() {
+        if (!FlightRecorder.isInitialized()) {
+            return null;
+        }
+
+        HandleEvent event = new HandleEvent();
+
+        if (!event.isEnabled()) {
+            return null;
+        }
+
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endHandle(Object trace, EventSubscription<?> subscription) {
+        HandleEvent handleEvent = (HandleEvent) trace;
+        handleEvent.end();
+
+        if (handleEvent.shouldCommit()) {
+            handleEvent.eventType = subscription.getType();
+            handleEvent.priority = subscription.getPriority().name();
+            handleEvent.commit();
+        }
+    }
+
+    @Override
+    public Object beginAsync() {
+        if (!FlightRecorder.isInitialized()) {
+            return null;
+        }
+
+        AsyncCompletionEvent event = new AsyncCompletionEvent();
+
+        if (!event.isEnabled()) {
+            return null;
+        }
+
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endAsync(Object trace, AsyncEvent<?> event) {
+        AsyncCompletionEvent completionEvent = (AsyncCompletionEvent) trace;
+        completionEvent.eventType = event.getClass();
+        completionEvent.commit();
+    }
+
+    @Name("com.github.lero4ka16.ef4j.Publish")
+    @Label("Event Publish")
+    @Description("Event published to the bus, including execution of its handlers")
+    @Category("Ef4j")
+    @StackTrace(false)
+    @Enabled(false)
+    static final class PublishEvent extends jdk.jfr.Event {
+
+        @Label("Event Type")
+        Class<?> eventType;
+
+        @Label("Subscribers")
+        int subscribers;
+
+    }
+
+    @Name("com.github.lero4ka16.ef4j.Handle")
+    @Label("Event Handler")
+    @Description("Execution of the single event handler, that took longer than the threshold")
+    @Category("Ef4j")
+    @Threshold("1 ms")
+    static final class HandleEvent extends jdk.jfr.Event {
+
+        @Label("Event Type")
+        Class<?> eventType;
+
+        @Label("Priority")
+        String priority;
+
+    }
+
+    @Name("com.github.lero4ka16.ef4j.AsyncCompletion")
+    @Label("Async Event Completion")
+    @Description("Time between the end of publishing of the async event and completion of all its intents")
+    @Category("Ef4j")
+    @StackTrace(false)
+    static final class AsyncCompletionEvent extends jdk.jfr.Event {
+
+        @Label("Event Type")
+        Class<?> eventType;
+
+    }
+
+}
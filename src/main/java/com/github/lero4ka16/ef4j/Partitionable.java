@@ -0,0 +1,33 @@
+/*
+ *    Copyright 2021 Lero4ka16
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.github.lero4ka16.ef4j;
+
+/**
+ * Event, that is handled by the loop of its partition key, see {@link PartitionedEventBus}
+ *
+ * @author lero4ka16
+ */
+public interface Partitionable {
+
+    /**
+     * @return partition key of the event, must implement {@code equals} and {@code hashCode},
+     * or {@code null} to use the class of the event
+     */
+    Object getPartitionKey();
+
+}
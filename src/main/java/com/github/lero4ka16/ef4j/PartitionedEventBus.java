@@ -0,0 +1,250 @@
+/*
+ *    Copyright 2021 Lero4ka16
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.github.lero4ka16.ef4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread safe event bus, that hands events off to the single-threaded event loops.
+ * <p>
+ * Loop of the event is chosen by {@link Partitionable#getPartitionKey()}, or by the class
+ * of the event, if it isn't {@link Partitionable} or its key is {@code null}. Events of the same key are handled in order
+ * they were published, events of different keys are handled in parallel.
+ * <p>
+ * Handlers are not locked, so the handler, that is called for events of different keys,
+ * should keep the state of each key separately or be thread safe.
+ *
+ * @author lero4ka16
+ */
+public final class PartitionedEventBus extends AbstractEventBus implements AutoCloseable {
+
+    private static final int MAX_BATCH = 256;
+
+    /**
+     * Last event of each loop after the bus is closed
+     */
+    private static final Event SHUTDOWN = new Event() {
+    };
+
+    private final EventLoop[] loops;
+
+    /**
+     * Number of publishers, that passed the check of {@link #running}, but haven't enqueued their events yet
+     */
+    private final AtomicInteger activePublishers = new AtomicInteger();
+
+    private volatile boolean running = true;
+
+    public PartitionedEventBus() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public PartitionedEventBus(int loops) {
+        this(loops, new LoopThreadFactory());
+    }
+
+    /**
+     * @param loops         number of event loops
+     * @param threadFactory factory for loop threads
+     */
+    public PartitionedEventBus(int loops, ThreadFactory threadFactory) {
+        this(loops, threadFactory, null);
+    }
+
+    /**
+     * @param loops         number of event loops
+     * @param threadFactory factory for loop threads
+     * @param metrics       metrics of the bus, or {@code null} to disable them
+     */
+    public PartitionedEventBus(int loops, ThreadFactory threadFactory, EventBusMetrics metrics) {
+        this(loops, threadFactory, metrics, null);
+    }
+
+    /**
+     * @param loops         number of event loops
+     * @param threadFactory factory for loop threads
+     * @param metrics       metrics of the bus, or {@code null} to disable them
+     * @param faultPolicy   policy for failing and slow handlers, or {@code null} to disable it
+     */
+    public PartitionedEventBus(int loops, ThreadFactory threadFactory, EventBusMetrics metrics,
+                               EventFaultPolicy faultPolicy) {
+        super(true, new ConcurrentHashMap<>(), new ConcurrentHashMap<>(), ConcurrentHashMap::newKeySet,
+                EventLockMode.BUS, null, metrics, faultPolicy);
+
+        if (loops <= 0) {
+            throw new IllegalArgumentException("Number of loops must be positive");
+        }
+
+        this.loops = new EventLoop[loops];
+
+        for (int i = 0; i < loops; i++) {
+            EventLoop loop = new EventLoop();
+            loop.thread = threadFactory.newThread(loop);
+
+            this.loops[i] = loop;
+        }
+
+        for (EventLoop loop : this.loops) {
+            loop.thread.start();
+        }
+    }
+
+    /**
+     * @throws IllegalStateException if the bus is closed
+     */
+    @Override
+    public void publish(Event event) {
+        activePublishers.incrementAndGet();
+
+        try {
+            if (!running) {
+                throw new IllegalStateException("Bus is closed");
+            }
+
+            loops[indexOf(event)].queue.add(event);
+        } finally {
+            activePublishers.decrementAndGet();
+        }
+    }
+
+    @Override
+    void publish(Event event, EventDispatcher<?> dispatcher) {
+        publish(event);
+    }
+
+    @Override
+    public void publishAll(Collection<? extends Event> events) {
+        for (Event event : events) {
+            publish(event);
+        }
+    }
+
+    /**
+     * Stops accepting new events and waits until loops handle already published ones,
+     * when called by the handler, it doesn't wait for the loop of that handler,
+     * if the waiting thread is interrupted, it returns earlier with the interrupt flag set
+     */
+    @Override
+    public void close() {
+        running = false;
+
+        // events of publishers, that passed the check, must be enqueued before the shutdown
+        while (activePublishers.get() != 0) {
+            Thread.yield();
+        }
+
+        for (EventLoop loop : loops) {
+            loop.queue.add(SHUTDOWN);
+        }
+
+        Thread current = Thread.currentThread();
+
+        try {
+            for (EventLoop loop : loops) {
+                // loop, that closes the bus, stops after its current batch
+                if (loop.thread != current) {
+                    loop.thread.join();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private int indexOf(Event event) {
+        Object key = event instanceof Partitionable
+                ? ((Partitionable) event).getPartitionKey()
+                : null;
+
+        if (key == null) {
+            key = event.getClass();
+        }
+
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+
+        return (hash & Integer.MAX_VALUE) % loops.length;
+    }
+
+    private final class EventLoop implements Runnable {
+
+        private final BlockingQueue<Event> queue = new LinkedBlockingQueue<>();
+
+        private Thread thread;
+
+        @Override
+        public void run() {
+            List<Event> batch = new ArrayList<>(MAX_BATCH);
+
+            boolean shutdown = false;
+
+            while (!shutdown) {
+                try {
+                    batch.add(queue.take());
+                } catch (InterruptedException e) {
+                    return;
+                }
+
+                queue.drainTo(batch, MAX_BATCH - 1);
+
+                for (int i = 0; i < batch.size(); i++) {
+                    Event event = batch.get(i);
+
+                    if (event == SHUTDOWN) {
+                        // no events can be added after the shutdown
+                        shutdown = true;
+                        break;
+                    }
+
+                    handle(event);
+                }
+
+                batch.clear();
+            }
+        }
+
+        private void handle(Event event) {
+            try {
+                PartitionedEventBus.super.publish(event);
+            } catch (Throwable t) {
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
+            }
+        }
+    }
+
+    private static final class LoopThreadFactory implements ThreadFactory {
+
+        private static final AtomicInteger COUNTER = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "ef4j-event-loop-" + COUNTER.incrementAndGet());
+            thread.setDaemon(true);
+
+            return thread;
+        }
+    }
+
+}
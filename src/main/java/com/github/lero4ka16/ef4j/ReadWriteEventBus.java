@@ -0,0 +1,183 @@
+/*
+ *    Copyright 2021 Lero4ka16
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.github.lero4ka16.ef4j;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Thread safe event bus, that lets events to be published in parallel.
+ * <p>
+ * Like in {@link SyncEventBus}, subscriptions are never changed while an event is
+ * being published, so after {@code unsubscribe} returns, the handler won't be called anymore.
+ * But unlike {@link SyncEventBus}, publishing threads do not block each other,
+ * they hold read lock, while subscribe and unsubscribe hold write lock.
+ * <p>
+ * Changes made from the handler are applied immediately, they are visible
+ * to the next events, but not to the events that are being published.
+ *
+ * @author lero4ka16
+ */
+public final class ReadWriteEventBus extends AbstractEventBus {
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public ReadWriteEventBus() {
+        this(EventLockMode.LISTENER);
+    }
+
+    /**
+     * @param lockMode lock used for handlers, that are not {@link EventHandler#concurrent()}
+     */
+    public ReadWriteEventBus(EventLockMode lockMode) {
+        this(lockMode, null);
+    }
+
+    /**
+     * @param lockMode lock used for handlers, that are not {@link EventHandler#concurrent()}
+     * @param metrics  metrics of the bus, or {@code null} to disable them
+     */
+    public ReadWriteEventBus(EventLockMode lockMode, EventBusMetrics metrics) {
+        this(lockMode, metrics, null);
+    }
+
+    /**
+     * @param metrics     metrics of the bus, or {@code null} to disable them
+     * @param faultPolicy policy for failing and slow handlers, or {@code null} to disable it
+     */
+    public ReadWriteEventBus(EventLockMode lockMode, EventBusMetrics metrics, EventFaultPolicy faultPolicy) {
+        super(false, new ConcurrentHashMap<>(), new ConcurrentHashMap<>(), ConcurrentHashMap::newKeySet,
+                lockMode, null, metrics, faultPolicy);
+    }
+
+    private <T> T write(Supplier<T> action) {
+        // write lock can't be acquired by the thread holding read lock,
+        // that means we are called from the handler
+        if (lock.getReadHoldCount() > 0) {
+            return action.get();
+        }
+
+        lock.writeLock().lock();
+
+        try {
+            return action.get();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void write(Runnable action) {
+        write(() -> {
+            action.run();
+            return null;
+        });
+    }
+
+    @Override
+    public void unsubscribe(EventSubscription<?> subscription) {
+        write(() -> super.unsubscribe(subscription));
+    }
+
+    @Override
+    public void unsubscribeAll(EventNamespace namespace) {
+        write(() -> super.unsubscribeAll(namespace));
+    }
+
+    @Override
+    public void unsubscribeAll() {
+        write(() -> super.unsubscribeAll());
+    }
+
+    @Override
+    public void publish(Event event) {
+        lock.readLock().lock();
+
+        try {
+            super.publish(event);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    void publish(Event event, EventDispatcher<?> dispatcher) {
+        lock.readLock().lock();
+
+        try {
+            super.publish(event, dispatcher);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void publishAll(Collection<? extends Event> events) {
+        lock.readLock().lock();
+
+        try {
+            super.publishAll(events);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    protected void register(EventSubscription<? extends Event> subscription) {
+        write(() -> super.register(subscription));
+    }
+
+    @Override
+    public EventObjectSubscription subscribe(EventNamespace namespace, Object listener) {
+        return write(() -> super.subscribe(namespace, listener));
+    }
+
+    @Override
+    public EventObjectSubscription subscribe(EventNamespace namespace, Object listener, Object routingKey) {
+        return write(() -> super.subscribe(namespace, listener, routingKey));
+    }
+
+    @Override
+    public <E extends Event> EventSubscription<E> subscribe(EventNamespace namespace, Class<E> type,
+                                                            EventListener<E> listener, EventPriority priority,
+                                                            boolean ignoreCancelled) {
+        return write(() -> super.subscribe(namespace, type, listener, priority, ignoreCancelled));
+    }
+
+    @Override
+    public EventObjectSubscription subscribeWeak(EventNamespace namespace, Object listener) {
+        return write(() -> super.subscribeWeak(namespace, listener));
+    }
+
+    @Override
+    public void batch(Consumer<EventTransaction> action) {
+        write(() -> super.batch(action));
+    }
+
+    @Override
+    public EventObjectSubscription subscribe(Object listener) {
+        return write(() -> super.subscribe(listener));
+    }
+
+    @Override
+    public void unsubscribe(EventObjectSubscription objectSubscription) {
+        write(() -> super.unsubscribe(objectSubscription));
+    }
+}
@@ -0,0 +1,350 @@
+/*
+ *    Copyright 2021 Lero4ka16
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.github.lero4ka16.ef4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Thread safe event bus, that hands events off to the consumer threads using
+ * the pre-allocated ring buffer.
+ * <p>
+ * Publishing only claims the next sequence and stores the event into its slot, it doesn't allocate
+ * and doesn't wait, unless the buffer is full. Consumers take all published events at once and
+ * execute their handlers in order of priority. With the single consumer events are handled in order
+ * they were published and handlers don't need locks.
+ *
+ * @author lero4ka16
+ */
+public final class RingBufferEventBus extends AbstractEventBus implements AutoCloseable {
+
+    private static final int MAX_BATCH = 256;
+
+    private static final long IDLE_PARK_NANOS = 50_000;
+
+    private final int mask;
+
+    private final Event[] slots;
+
+    /**
+     * Sequence of each slot, {@code seq} means that slot is free for the publisher of {@code seq},
+     * {@code seq + 1} means that event of {@code seq} is published
+     */
+    private final AtomicLongArray sequences;
+
+    private final AtomicLong publishSequence = new AtomicLong();
+    private final AtomicLong consumeSequence = new AtomicLong();
+
+    /**
+     * Number of publishers, that passed the check of {@link #running}, but haven't stored their events yet
+     */
+    private final AtomicInteger activePublishers = new AtomicInteger();
+
+    private final List<Thread> consumers = new ArrayList<>();
+
+    private volatile boolean running = true;
+
+    public RingBufferEventBus(int bufferSize) {
+        this(bufferSize, 1);
+    }
+
+    public RingBufferEventBus(int bufferSize, int consumers) {
+        this(bufferSize, consumers, EventLockMode.BUS, new ConsumerThreadFactory());
+    }
+
+    /**
+     * @param bufferSize    size of the ring buffer, must be a power of two
+     * @param consumers     number of consumer threads
+     * @param lockMode      lock used for handlers, that are not {@link EventHandler#concurrent()},
+     *                      ignored if there is only one consumer
+     * @param threadFactory factory for consumer threads
+     */
+    public RingBufferEventBus(int bufferSize, int consumers, EventLockMode lockMode, ThreadFactory threadFactory) {
+        this(bufferSize, consumers, lockMode, threadFactory, null);
+    }
+
+    /**
+     * @param bufferSize    size of the ring buffer, must be a power of two
+     * @param consumers     number of consumer threads
+     * @param lockMode      lock used for handlers, that are not {@link EventHandler#concurrent()},
+     *                      ignored if there is only one consumer
+     * @param threadFactory factory for consumer threads
+     * @param metrics       metrics of the bus, or {@code null} to disable them
+     */
+    public RingBufferEventBus(int bufferSize, int consumers, EventLockMode lockMode, ThreadFactory threadFactory,
+                              EventBusMetrics metrics) {
+        this(bufferSize, consumers, lockMode, threadFactory, metrics, null);
+    }
+
+    /**
+     * @param bufferSize    size of the ring buffer, must be a power of two
+     * @param consumers     number of consumer threads
+     * @param lockMode      lock used for handlers, that are not {@link EventHandler#concurrent()},
+     *                      ignored if there is only one consumer
+     * @param threadFactory factory for consumer threads
+     * @param metrics       metrics of the bus, or {@code null} to disable them
+     * @param faultPolicy   policy for failing and slow handlers, or {@code null} to disable it
+     */
+    public RingBufferEventBus(int bufferSize, int consumers, EventLockMode lockMode, ThreadFactory threadFactory,
+                              EventBusMetrics metrics, EventFaultPolicy faultPolicy) {
+        super(consumers == 1, new ConcurrentHashMap<>(), new ConcurrentHashMap<>(), ConcurrentHashMap::newKeySet,
+                lockMode, null, metrics, faultPolicy);
+
+        if (bufferSize <= 0 || Integer.bitCount(bufferSize) != 1) {
+            throw new IllegalArgumentException("Buffer size must be a power of two");
+        }
+
+        if (consumers <= 0) {
+            throw new IllegalArgumentException("Number of consumers must be positive");
+        }
+
+        this.mask = bufferSize - 1;
+        this.slots = new Event[bufferSize];
+        this.sequences = new AtomicLongArray(bufferSize);
+
+        for (int i = 0; i < bufferSize; i++) {
+            sequences.set(i, i);
+        }
+
+        for (int i = 0; i < consumers; i++) {
+            this.consumers.add(threadFactory.newThread(this::consume));
+        }
+
+        // all consumers are known before any of them can publish
+        for (Thread consumer : this.consumers) {
+            consumer.start();
+        }
+    }
+
+    /**
+     * @throws IllegalStateException if the bus is closed, or if the handler publishes
+     *                               an event while the buffer is full
+     */
+    @Override
+    public void publish(Event event) {
+        beginPublish();
+
+        try {
+            if (isConsumer()) {
+                // consumer can't wait for itself
+                publishFromConsumer(event);
+                return;
+            }
+
+            long sequence = publishSequence.getAndIncrement();
+            int index = (int) sequence & mask;
+
+            // buffer is full, wait for consumers
+            while (sequences.get(index) != sequence) {
+                Thread.yield();
+            }
+
+            slots[index] = event;
+            sequences.lazySet(index, sequence + 1);
+        } finally {
+            activePublishers.decrementAndGet();
+        }
+    }
+
+    private void publishFromConsumer(Event event) {
+        while (true) {
+            long sequence = publishSequence.get();
+            int index = (int) sequence & mask;
+
+            if (sequences.get(index) != sequence) {
+                throw new IllegalStateException("Buffer is full, event can't be published by the consumer");
+            }
+
+            if (publishSequence.compareAndSet(sequence, sequence + 1)) {
+                slots[index] = event;
+                sequences.lazySet(index, sequence + 1);
+                return;
+            }
+        }
+    }
+
+    private void beginPublish() {
+        activePublishers.incrementAndGet();
+
+        if (!running) {
+            activePublishers.decrementAndGet();
+            throw new IllegalStateException("Bus is closed");
+        }
+    }
+
+    private boolean isConsumer() {
+        Thread current = Thread.currentThread();
+
+        for (Thread consumer : consumers) {
+            if (consumer == current) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    void publish(Event event, EventDispatcher<?> dispatcher) {
+        publish(event);
+    }
+
+    /**
+     * Claims sequences for all events at once
+     */
+    @Override
+    public void publishAll(Collection<? extends Event> events) {
+        if (isConsumer()) {
+            for (Event event : events) {
+                publish(event);
+            }
+
+            return;
+        }
+
+        beginPublish();
+
+        try {
+            Event[] array = events.toArray(new Event[0]);
+            long sequence = publishSequence.getAndAdd(array.length);
+
+            for (Event event : array) {
+                int index = (int) sequence & mask;
+
+                while (sequences.get(index) != sequence) {
+                    Thread.yield();
+                }
+
+                slots[index] = event;
+                sequences.lazySet(index, sequence + 1);
+
+                sequence++;
+            }
+        } finally {
+            activePublishers.decrementAndGet();
+        }
+    }
+
+    /**
+     * Stops accepting new events and waits until consumers handle already published ones,
+     * when called by the handler, it doesn't wait for the consumer of that handler,
+     * if the waiting thread is interrupted, it returns earlier with the interrupt flag set
+     */
+    @Override
+    public void close() {
+        running = false;
+
+        Thread current = Thread.currentThread();
+
+        try {
+            for (Thread consumer : consumers) {
+                // consumer, that closes the bus, stops after its current batch
+                if (consumer != current) {
+                    consumer.join();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void consume() {
+        Event[] batch = new Event[Math.min(MAX_BATCH, slots.length)];
+
+        while (true) {
+            int size = claim(batch);
+
+            if (size == 0) {
+                if (!running && activePublishers.get() == 0
+                        && consumeSequence.get() == publishSequence.get()) {
+                    return;
+                }
+
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+
+            for (int i = 0; i < size; i++) {
+                Event event = batch[i];
+                batch[i] = null;
+
+                try {
+                    super.publish(event);
+                } catch (Throwable t) {
+                    Thread thread = Thread.currentThread();
+                    thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
+                }
+            }
+        }
+    }
+
+    private int claim(Event[] batch) {
+        while (true) {
+            long start = consumeSequence.get();
+            long end = start;
+
+            while (end - start < batch.length && sequences.get((int) end & mask) == end + 1) {
+                end++;
+            }
+
+            if (end == start) {
+                return 0;
+            }
+
+            if (!consumeSequence.compareAndSet(start, end)) {
+                continue;
+            }
+
+            int size = (int) (end - start);
+
+            for (int i = 0; i < size; i++) {
+                long sequence = start + i;
+                int index = (int) sequence & mask;
+
+                batch[i] = slots[index];
+                slots[index] = null;
+
+                // slot is free for the publisher of the next lap
+                sequences.lazySet(index, sequence + slots.length);
+            }
+
+            return size;
+        }
+    }
+
+    private static final class ConsumerThreadFactory implements ThreadFactory {
+
+        private static final AtomicInteger COUNTER = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "ef4j-ring-consumer-" + COUNTER.incrementAndGet());
+            thread.setDaemon(true);
+
+            return thread;
+        }
+    }
+
+}
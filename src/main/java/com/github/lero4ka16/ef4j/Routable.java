@@ -0,0 +1,33 @@
+/*
+ *    Copyright 2021 Lero4ka16
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.github.lero4ka16.ef4j;
+
+/**
+ * Event, that is delivered only to subscriptions of its routing key
+ * and to subscriptions without the key, see {@link EventBus#subscribe(EventNamespace, Object, Object)}
+ *
+ * @author lero4ka16
+ */
+public interface Routable {
+
+    /**
+     * @return routing key of the event, must implement {@code equals} and {@code hashCode}
+     */
+    Object getRoutingKey();
+
+}
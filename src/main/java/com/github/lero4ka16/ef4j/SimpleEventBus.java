@@ -30,7 +30,22 @@ import java.util.HashSet;
 public final class SimpleEventBus extends AbstractEventBus {
 
     public SimpleEventBus() {
-        super(false, new HashMap<>(), new HashMap<>(), HashSet::new);
+        this(null);
+    }
+
+    /**
+     * @param metrics metrics of the bus, or {@code null} to disable them
+     */
+    public SimpleEventBus(EventBusMetrics metrics) {
+        this(metrics, null);
+    }
+
+    /**
+     * @param metrics     metrics of the bus, or {@code null} to disable them
+     * @param faultPolicy policy for failing and slow handlers, or {@code null} to disable it
+     */
+    public SimpleEventBus(EventBusMetrics metrics, EventFaultPolicy faultPolicy) {
+        super(false, new HashMap<>(), new HashMap<>(), HashSet::new, EventLockMode.BUS, null, metrics, faultPolicy);
     }
 
 }
@@ -16,8 +16,10 @@
 
 package com.github.lero4ka16.ef4j;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.function.Consumer;
 
 /**
  * @author lero4ka16
@@ -25,7 +27,22 @@ import java.util.HashSet;
 public final class SyncEventBus extends AbstractEventBus {
 
     public SyncEventBus() {
-        super(true, new HashMap<>(), new HashMap<>(), HashSet::new);
+        this(null);
+    }
+
+    /**
+     * @param metrics metrics of the bus, or {@code null} to disable them
+     */
+    public SyncEventBus(EventBusMetrics metrics) {
+        this(metrics, null);
+    }
+
+    /**
+     * @param metrics     metrics of the bus, or {@code null} to disable them
+     * @param faultPolicy policy for failing and slow handlers, or {@code null} to disable it
+     */
+    public SyncEventBus(EventBusMetrics metrics, EventFaultPolicy faultPolicy) {
+        super(true, new HashMap<>(), new HashMap<>(), HashSet::new, EventLockMode.BUS, null, metrics, faultPolicy);
     }
 
     @Override
@@ -48,6 +65,21 @@ public final class SyncEventBus extends AbstractEventBus {
         super.publish(event);
     }
 
+    @Override
+    synchronized void publish(Event event, EventDispatcher<?> dispatcher) {
+        super.publish(event, dispatcher);
+    }
+
+    @Override
+    public synchronized void publishAll(Event... events) {
+        super.publishAll(events);
+    }
+
+    @Override
+    public synchronized void publishAll(Collection<? extends Event> events) {
+        super.publishAll(events);
+    }
+
     @Override
     protected synchronized void register(EventSubscription<? extends Event> subscription) {
         super.register(subscription);
@@ -58,6 +90,30 @@ public final class SyncEventBus extends AbstractEventBus {
         return super.subscribe(namespace, listener);
     }
 
+    @Override
+    public synchronized EventObjectSubscription subscribe(EventNamespace namespace, Object listener,
+                                                          Object routingKey) {
+        return super.subscribe(namespace, listener, routingKey);
+    }
+
+    @Override
+    public synchronized <E extends Event> EventSubscription<E> subscribe(EventNamespace namespace, Class<E> type,
+                                                                         EventListener<E> listener,
+                                                                         EventPriority priority,
+                                                                         boolean ignoreCancelled) {
+        return super.subscribe(namespace, type, listener, priority, ignoreCancelled);
+    }
+
+    @Override
+    public synchronized EventObjectSubscription subscribeWeak(EventNamespace namespace, Object listener) {
+        return super.subscribeWeak(namespace, listener);
+    }
+
+    @Override
+    public synchronized void batch(Consumer<EventTransaction> action) {
+        super.batch(action);
+    }
+
     @Override
     public synchronized EventObjectSubscription subscribe(Object listener) {
         return super.subscribe(listener);
@@ -0,0 +1,183 @@
+/*
+ *    Copyright 2021 Lero4ka16
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.github.lero4ka16.ef4j;
+
+import com.github.lero4ka16.ef4j.EventBusTest.AsyncUpdateStateEvent;
+import com.github.lero4ka16.ef4j.EventBusTest.CancellableEvent;
+import com.github.lero4ka16.ef4j.EventBusTest.PooledEvent;
+import com.github.lero4ka16.ef4j.EventBusTest.UpdateStateEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author lero4ka16
+ */
+public class AsyncEventBusTest {
+
+	private ExecutorService executor;
+	private AsyncEventBus bus;
+
+	@BeforeEach
+	public void setup() {
+		executor = Executors.newFixedThreadPool(2);
+		bus = new AsyncEventBus(executor);
+	}
+
+	@AfterEach
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void testPublishAsync() throws Exception {
+		StringBuilder order = new StringBuilder();
+		AtomicReference<Thread> thread = new AtomicReference<>();
+
+		bus.subscribe(new Object() {
+			@EventHandler(EventPriority.MONITOR)
+			public void monitor(CancellableEvent event) {
+				order.append("monitor;");
+			}
+
+			@EventHandler(value = EventPriority.HIGH, ignoreCancelled = true)
+			public void high(CancellableEvent event) {
+				order.append("high;");
+			}
+
+			@EventHandler(EventPriority.LOW)
+			public void low(CancellableEvent event) {
+				thread.set(Thread.currentThread());
+				order.append("low;");
+				event.setCancelled(true);
+			}
+		});
+
+		CancellableEvent event = new CancellableEvent("Hello");
+		assertEquals(event, bus.publishAsync(event).get(1, TimeUnit.SECONDS));
+
+		assertEquals("low;monitor;", order.toString());
+		assertNotEquals(Thread.currentThread(), thread.get());
+	}
+
+	@Test
+	public void testFailure() {
+		bus.subscribe(new Object() {
+			@EventHandler
+			public void listen(UpdateStateEvent event) {
+				throw new IllegalStateException("Failure");
+			}
+		});
+
+		CompletableFuture<UpdateStateEvent> future = bus.publishAsync(new UpdateStateEvent("X state"));
+
+		ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(1, TimeUnit.SECONDS));
+		assertTrue(e.getCause() instanceof IllegalStateException);
+	}
+
+	@Test
+	public void testPooledEvent() throws Exception {
+		EventPool<PooledEvent> pool = new EventPool<>(PooledEvent::new, 4, true);
+		AtomicReference<String> value = new AtomicReference<>();
+
+		bus.subscribe(new Object() {
+			@EventHandler
+			public void listen(PooledEvent event) {
+				value.set(event.getValue());
+			}
+		});
+
+		PooledEvent event = pool.acquire();
+		event.setValue("X value");
+
+		assertNull(bus.publishAsync(event).get(1, TimeUnit.SECONDS));
+		assertEquals("X value", value.get());
+	}
+
+	@Test
+	public void testUncaughtFailure() throws InterruptedException {
+		CountDownLatch latch = new CountDownLatch(1);
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+
+		ExecutorService executor = Executors.newSingleThreadExecutor(task -> {
+			Thread thread = new Thread(task);
+			thread.setUncaughtExceptionHandler((t, e) -> {
+				failure.set(e);
+				latch.countDown();
+			});
+
+			return thread;
+		});
+
+		try {
+			AsyncEventBus bus = new AsyncEventBus(executor);
+
+			bus.subscribe(new Object() {
+				@EventHandler
+				public void listen(UpdateStateEvent event) {
+					throw new IllegalStateException("Failure");
+				}
+			});
+
+			bus.publish(new UpdateStateEvent("X state"));
+
+			assertTrue(latch.await(1, TimeUnit.SECONDS));
+			assertTrue(failure.get() instanceof IllegalStateException);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testAsyncEvent() throws InterruptedException, ExecutionException, TimeoutException {
+		AtomicReference<AsyncUpdateStateEvent> pending = new AtomicReference<>();
+
+		bus.subscribe(new Object() {
+			@EventHandler
+			public void listen(AsyncUpdateStateEvent event) {
+				event.addIntent();
+				pending.set(event);
+			}
+		});
+
+		AsyncUpdateStateEvent event = new AsyncUpdateStateEvent("Initial", $ -> {
+		});
+
+		CompletableFuture<AsyncUpdateStateEvent> future = bus.publishAsync(event);
+		assertThrows(TimeoutException.class, () -> future.get(100, TimeUnit.MILLISECONDS));
+
+		pending.get().doneIntent();
+		assertEquals(event, future.get(1, TimeUnit.SECONDS));
+	}
+
+}
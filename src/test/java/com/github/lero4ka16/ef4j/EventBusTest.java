@@ -16,13 +16,36 @@
 
 package com.github.lero4ka16.ef4j;
 
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * @author lero4ka16
@@ -93,6 +116,387 @@ public class EventBusTest {
 		assertEquals("Do not cancel me please", value.get());
 	}
 
+	@Test
+	public void testPriority() {
+		StringBuilder order = new StringBuilder();
+
+		bus.subscribe(new Object() {
+			@EventHandler(EventPriority.MONITOR)
+			public void monitor(UpdateStateEvent event) {
+				order.append("monitor;");
+			}
+		});
+
+		bus.subscribe(new Object() {
+			@EventHandler(EventPriority.HIGH)
+			public void high(UpdateStateEvent event) {
+				order.append("high;");
+			}
+		});
+
+		bus.subscribe(new Object() {
+			@EventHandler(EventPriority.LOW)
+			public void low(UpdateStateEvent event) {
+				order.append("low;");
+			}
+		});
+
+		EventObjectSubscription second = bus.subscribe(new Object() {
+			@EventHandler(EventPriority.HIGH)
+			public void high(UpdateStateEvent event) {
+				order.append("second high;");
+			}
+		});
+
+		bus.publish(new UpdateStateEvent("X state"));
+		assertEquals("low;high;second high;monitor;", order.toString());
+
+		second.unsubscribe();
+		order.setLength(0);
+
+		bus.publish(new UpdateStateEvent("X state"));
+		assertEquals("low;high;monitor;", order.toString());
+	}
+
+	@Test
+	public void testHierarchy() {
+		StringBuilder order = new StringBuilder();
+
+		bus.publish(new CancellableEvent("Not cached yet"));
+
+		bus.subscribe(new Object() {
+			@EventHandler
+			public void any(Event event) {
+				order.append("event;");
+			}
+
+			@EventHandler(EventPriority.LOW)
+			public void cancellable(Cancellable event) {
+				order.append("cancellable;");
+			}
+
+			@EventHandler(EventPriority.HIGH)
+			public void concrete(CancellableEvent event) {
+				order.append("concrete;");
+			}
+		});
+
+		bus.publish(new CancellableEvent("Hello"));
+		assertEquals("cancellable;event;concrete;", order.toString());
+
+		order.setLength(0);
+
+		bus.publish(new UpdateStateEvent("X state"));
+		assertEquals("event;", order.toString());
+	}
+
+	@Test
+	public void testSameListenerClass() {
+		StateListener first = new StateListener();
+		StateListener second = new StateListener();
+
+		bus.subscribe(first);
+		EventObjectSubscription subscription = bus.subscribe(second);
+
+		bus.publish(new UpdateStateEvent("X state"));
+		assertEquals("X state", first.state);
+		assertEquals("X state", second.state);
+
+		subscription.unsubscribe();
+
+		bus.publish(new UpdateStateEvent("Y state"));
+		assertEquals("Y state", first.state);
+		assertEquals("X state", second.state);
+	}
+
+	@Test
+	public void testGeneratedRegistrar() throws ClassNotFoundException {
+		Class<?> registrar = Class.forName(StateListener.class.getName() + EventRegistrar.SUFFIX);
+		assertTrue(EventRegistrar.class.isAssignableFrom(registrar));
+
+		StateListener listener = new StateListener();
+		bus.subscribe(listener);
+
+		bus.publish(new UpdateStateEvent("X state"));
+		assertEquals("X state", listener.state);
+
+		// handlers are named classes, not lambdas
+		for (Class<?> handler : registrar.getDeclaredClasses()) {
+			assertTrue(EventListener.class.isAssignableFrom(handler));
+			assertFalse(handler.isSynthetic());
+		}
+
+		assertEquals(1, registrar.getDeclaredClasses().length);
+	}
+
+	@Test
+	public void testWrongParameter() {
+		assertThrows(IllegalStateException.class, () -> bus.subscribe(new Object() {
+			@EventHandler
+			public void listen(Runnable event) {
+			}
+		}));
+
+		assertThrows(IllegalStateException.class, () -> bus.subscribe(new Object() {
+			@EventHandler
+			public void listen(UpdateStateEvent event, Cancellable cancellable) {
+			}
+		}));
+	}
+
+	@Test
+	public void testBrokenRegistrar() {
+		BrokenListener listener = new BrokenListener();
+		bus.subscribe(listener);
+
+		bus.publish(new UpdateStateEvent("X state"));
+		assertEquals("X state", listener.state);
+	}
+
+	@Test
+	public void testConcurrentExecutorInlineFailure() {
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		EventBus bus = new ConcurrentEventBus(executor);
+
+		AtomicBoolean done = new AtomicBoolean();
+
+		Object listener = new Object() {
+			@EventHandler(value = EventPriority.LOWEST, concurrent = true)
+			public void concurrent(UpdateStateEvent event) throws InterruptedException {
+				Thread.sleep(100);
+				done.set(true);
+			}
+
+			@EventHandler
+			public void inline(UpdateStateEvent event) {
+				throw new IllegalStateException(event.state);
+			}
+		};
+
+		try {
+			bus.subscribe(listener);
+
+			assertThrows(IllegalStateException.class, () -> bus.publish(new UpdateStateEvent("X state")));
+			assertTrue(done.get());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testConcurrentExecutor() {
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		EventBus bus = new ConcurrentEventBus(executor);
+
+		CountDownLatch latch = new CountDownLatch(2);
+		AtomicReference<String> state = new AtomicReference<>();
+
+		Object listener = new Object() {
+			@EventHandler(concurrent = true)
+			public void first(UpdateStateEvent event) throws InterruptedException {
+				latch.countDown();
+				latch.await();
+			}
+
+			@EventHandler(concurrent = true)
+			public void second(UpdateStateEvent event) throws InterruptedException {
+				latch.countDown();
+				latch.await();
+			}
+
+			@EventHandler(EventPriority.MONITOR)
+			public void monitor(UpdateStateEvent event) {
+				state.set(latch.getCount() + " " + event.state);
+			}
+		};
+
+		try {
+			bus.subscribe(listener);
+			bus.publish(new UpdateStateEvent("X state"));
+
+			assertEquals("0 X state", state.get());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testLockModes() {
+		for (EventLockMode lockMode : EventLockMode.values()) {
+			EventBus bus = new ConcurrentEventBus(lockMode);
+
+			StateListener listener = new StateListener();
+			bus.subscribe(listener);
+
+			bus.publish(new UpdateStateEvent(lockMode.name()));
+			assertEquals(lockMode.name(), listener.state);
+		}
+	}
+
+	@Test
+	public void testConfined() throws InterruptedException {
+		EventBus bus = new ConcurrentEventBus(EventLockMode.CONFINED);
+		bus.subscribe(new StateListener());
+
+		bus.publish(new UpdateStateEvent("X state"));
+
+		AtomicReference<Throwable> error = new AtomicReference<>();
+
+		Thread thread = new Thread(() -> {
+			try {
+				bus.publish(new UpdateStateEvent("Y state"));
+			} catch (Throwable t) {
+				error.set(t);
+			}
+		});
+
+		thread.start();
+		thread.join();
+
+		assertTrue(error.get() instanceof IllegalStateException);
+	}
+
+	@Test
+	public void testParallelReaders() throws InterruptedException {
+		EventBus bus = new ReadWriteEventBus();
+
+		CountDownLatch latch = new CountDownLatch(2);
+		AtomicInteger entered = new AtomicInteger();
+
+		bus.subscribe(new Object() {
+			@EventHandler(concurrent = true)
+			public void listen(UpdateStateEvent event) throws InterruptedException {
+				latch.countDown();
+
+				if (latch.await(1, TimeUnit.SECONDS)) {
+					entered.incrementAndGet();
+				}
+			}
+		});
+
+		Thread thread = new Thread(() -> bus.publish(new UpdateStateEvent("X state")));
+		thread.start();
+
+		bus.publish(new UpdateStateEvent("Y state"));
+		thread.join();
+
+		assertEquals(2, entered.get());
+	}
+
+	@Test
+	public void testUnsubscribeFromHandler() {
+		EventBus bus = new ReadWriteEventBus();
+
+		AtomicReference<EventObjectSubscription> subscription = new AtomicReference<>();
+		AtomicInteger calls = new AtomicInteger();
+
+		subscription.set(bus.subscribe(new Object() {
+			@EventHandler
+			public void listen(UpdateStateEvent event) {
+				calls.incrementAndGet();
+				subscription.get().unsubscribe();
+			}
+		}));
+
+		bus.publish(new UpdateStateEvent("X state"));
+		bus.publish(new UpdateStateEvent("Y state"));
+
+		assertEquals(1, calls.get());
+	}
+
+	@Test
+	public void testPublishAll() {
+		StringBuilder order = new StringBuilder();
+
+		bus.subscribe(new Object() {
+			@EventHandler
+			public void state(UpdateStateEvent event) {
+				order.append(event.state).append(';');
+			}
+
+			@EventHandler
+			public void cancellable(CancellableEvent event) {
+				order.append(event.value).append(';');
+			}
+
+			@EventHandler(EventPriority.MONITOR)
+			public void async(AsyncUpdateStateEvent event) {
+				order.append(event.state).append(';');
+			}
+		});
+
+		bus.publishAll(
+				new UpdateStateEvent("1"),
+				new CancellableEvent("2"),
+				new AsyncUpdateStateEvent("3", event -> order.append("done;")),
+				new UpdateStateEvent("4"),
+				new CancellableEvent("5")
+		);
+
+		assertEquals("1;2;done;3;4;5;", order.toString());
+	}
+
+	@Test
+	public void testPool() throws Exception {
+		EventPool<PooledEvent> pool = new EventPool<>(PooledEvent::new, 4, true);
+		AtomicReference<String> value = new AtomicReference<>();
+
+		bus.subscribe(new Object() {
+			@EventHandler
+			public void listen(PooledEvent event) {
+				value.set(event.getValue());
+			}
+		});
+
+		PooledEvent event = pool.acquire();
+		event.value = "Pooled";
+
+		bus.publish(event);
+		assertEquals("Pooled", value.get());
+
+		assertThrows(IllegalStateException.class, event::getValue);
+		assertThrows(IllegalStateException.class, () -> bus.publish(event));
+
+		AtomicReference<Throwable> error = new AtomicReference<>();
+		Thread thread = new Thread(() -> {
+			try {
+				event.getValue();
+			} catch (Throwable e) {
+				error.set(e);
+			}
+		});
+
+		thread.start();
+		thread.join();
+
+		assertTrue(error.get() instanceof IllegalStateException);
+
+		PooledEvent reused = pool.acquire();
+		assertSame(event, reused);
+		assertNull(reused.getValue());
+	}
+
+	@Test
+	public void testPublisher() {
+		EventPublisher<UpdateStateEvent> publisher = bus.publisher(UpdateStateEvent.class);
+
+		StateListener listener = new StateListener();
+		EventObjectSubscription subscription = bus.subscribe(listener);
+
+		publisher.publish(new UpdateStateEvent("X state"));
+		assertEquals("X state", listener.state);
+
+		subscription.unsubscribe();
+
+		publisher.publish(new UpdateStateEvent("Y state"));
+		assertEquals("X state", listener.state);
+
+		bus.subscribe(listener);
+
+		publisher.publish(new UpdateStateEvent("Z state"));
+		assertEquals("Z state", listener.state);
+	}
+
 	@Test
 	public void testObject() {
 		AtomicReference<String> state = new AtomicReference<>();
@@ -161,6 +565,545 @@ public class EventBusTest {
 		assertEquals("Changed value", result.get());
 	}
 
+	@Test
+	public void testAsyncEventFuture() throws Exception {
+		CompletableFuture<String> intent = new CompletableFuture<>();
+		AtomicBoolean hang = new AtomicBoolean();
+
+		bus.subscribe(new Object() {
+			@EventHandler
+			public void listen(AsyncUpdateStateEvent event) {
+				if (hang.get()) {
+					event.addIntent();
+				} else {
+					event.addIntent(intent.thenAccept(state -> event.state = state));
+				}
+			}
+		});
+
+		AsyncUpdateStateEvent event = new AsyncUpdateStateEvent("Initial", $ -> {
+		});
+
+		bus.publish(event);
+		assertFalse(event.getFuture().isDone());
+
+		intent.complete("Changed value");
+
+		assertSame(event, event.getFuture().get(1, TimeUnit.SECONDS));
+		assertEquals("Changed value", event.state);
+		assertFalse(event.isTimedOut());
+
+		hang.set(true);
+
+		AsyncUpdateStateEvent hanging = new AsyncUpdateStateEvent("Initial", $ -> {
+		});
+		hanging.setDeadline(50, TimeUnit.MILLISECONDS);
+
+		bus.publish(hanging);
+
+		assertSame(hanging, hanging.getFuture().get(1, TimeUnit.SECONDS));
+		assertTrue(hanging.isTimedOut());
+
+		hanging.doneIntent();
+
+		// slow callback doesn't delay deadlines of other events
+		AsyncUpdateStateEvent slow = new AsyncUpdateStateEvent("Initial", $ -> {
+			try {
+				Thread.sleep(1000);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		slow.setDeadline(10, TimeUnit.MILLISECONDS);
+
+		AsyncUpdateStateEvent next = new AsyncUpdateStateEvent("Initial", $ -> {
+		});
+		next.setDeadline(50, TimeUnit.MILLISECONDS);
+
+		bus.publish(slow);
+		bus.publish(next);
+
+		assertSame(next, next.getFuture().get(500, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void testCoalescing() {
+		List<String> states = new ArrayList<>();
+
+		bus.subscribe(new Object() {
+			@EventHandler
+			public void listen(PositionEvent event) {
+				states.add(event.entity + ":" + event.position);
+			}
+		});
+
+		EventCoalescer coalescer = new EventCoalescer(bus);
+
+		coalescer.publish(new PositionEvent("A", 1));
+		coalescer.publish(new PositionEvent("B", 1));
+		coalescer.publish(new PositionEvent("A", 2));
+		coalescer.publish(new PositionEvent("A", 3));
+
+		assertTrue(states.isEmpty());
+
+		coalescer.flush();
+
+		Collections.sort(states);
+		assertEquals(Arrays.asList("A:3", "B:1"), states);
+
+		states.clear();
+		coalescer.flush();
+
+		assertTrue(states.isEmpty());
+
+		coalescer.publish(new PositionEvent(null, 1));
+		coalescer.publish(new PositionEvent(null, 2));
+
+		assertEquals(Arrays.asList("null:1", "null:2"), states);
+	}
+
+	@Test
+	public void testRoutingKeys() {
+		List<String> calls = new ArrayList<>();
+
+		class EntityListener {
+
+			private final String name;
+
+			EntityListener(String name) {
+				this.name = name;
+			}
+
+			@EventHandler
+			public void listen(PositionEvent event) {
+				calls.add(name + ":" + event.entity);
+			}
+
+			@EventHandler(EventPriority.MONITOR)
+			public void monitor(PositionEvent event) {
+				calls.add(name + "-monitor:" + event.entity);
+			}
+
+		}
+
+		bus.subscribe(new EntityListener("any"));
+
+		bus.subscribe(bus, new EntityListener("A"), "A");
+		EventObjectSubscription b = bus.subscribe(bus, new EntityListener("B"), "B");
+
+		EventObjectSubscription another = bus.subscribe(bus, new EntityListener("A2"), "A");
+
+		bus.publish(new PositionEvent("A", 1));
+		assertEquals(Arrays.asList("any:A", "A:A", "A2:A", "any-monitor:A", "A-monitor:A", "A2-monitor:A"), calls);
+
+		calls.clear();
+		bus.publish(new PositionEvent("C", 1));
+		assertEquals(Arrays.asList("any:C", "any-monitor:C"), calls);
+
+		another.unsubscribe();
+
+		calls.clear();
+		bus.publish(new PositionEvent("A", 1));
+		assertEquals(Arrays.asList("any:A", "A:A", "any-monitor:A", "A-monitor:A"), calls);
+
+		calls.clear();
+		bus.subscribe(new EntityListener("late"));
+		bus.publish(new PositionEvent("B", 1));
+		assertEquals(Arrays.asList("any:B", "B:B", "late:B", "any-monitor:B", "B-monitor:B", "late-monitor:B"),
+				calls);
+
+		bus.subscribe(bus, new Object() {
+			@EventHandler(EventPriority.LOWEST)
+			public void listen(Routable event) {
+				calls.add("routable:" + event.getRoutingKey());
+			}
+		}, "C");
+
+		calls.clear();
+		bus.publish(new PositionEvent("C", 1));
+		assertEquals(Arrays.asList("routable:C", "any:C", "late:C", "any-monitor:C", "late-monitor:C"), calls);
+
+		calls.clear();
+		bus.publish(new PositionEvent("A", 1));
+		assertEquals(Arrays.asList("any:A", "A:A", "late:A", "any-monitor:A", "A-monitor:A", "late-monitor:A"),
+				calls);
+
+		// only changed routes are rebuilt
+		bus.batch(tx -> {
+			tx.unsubscribe(b);
+			tx.subscribe(bus, new EntityListener("D"), "D");
+		});
+
+		calls.clear();
+		bus.publish(new PositionEvent("A", 1));
+		bus.publish(new PositionEvent("B", 1));
+		bus.publish(new PositionEvent("D", 1));
+		assertEquals(Arrays.asList("any:A", "A:A", "late:A", "any-monitor:A", "A-monitor:A", "late-monitor:A",
+				"any:B", "late:B", "any-monitor:B", "late-monitor:B",
+				"any:D", "late:D", "D:D", "any-monitor:D", "late-monitor:D", "D-monitor:D"), calls);
+	}
+
+	@Test
+	public void testLambdaSubscription() {
+		List<String> calls = new ArrayList<>();
+
+		bus.subscribe(UpdateStateEvent.class, event -> calls.add("normal:" + event.state),
+				EventPriority.NORMAL, false);
+
+		EventSubscription<UpdateStateEvent> subscription = bus.subscribe(UpdateStateEvent.class,
+				event -> calls.add("low:" + event.state), EventPriority.LOW, false);
+
+		bus.subscribe(CancellableEvent.class, event -> event.setCancelled(true), EventPriority.LOW, false);
+		bus.subscribe(CancellableEvent.class, event -> calls.add("cancelled"), EventPriority.HIGH, true);
+
+		bus.publish(new UpdateStateEvent("X"));
+		bus.publish(new CancellableEvent("X value"));
+		assertEquals(Arrays.asList("low:X", "normal:X"), calls);
+
+		subscription.unsubscribe();
+
+		calls.clear();
+		bus.publish(new UpdateStateEvent("Y"));
+		assertEquals(Collections.singletonList("normal:Y"), calls);
+	}
+
+	@Test
+	public void testLazyPublish() {
+		List<String> calls = new ArrayList<>();
+		AtomicInteger created = new AtomicInteger();
+
+		bus.publish(UpdateStateEvent.class, () -> {
+			created.incrementAndGet();
+			return new UpdateStateEvent("X");
+		});
+
+		assertFalse(bus.hasSubscribers(UpdateStateEvent.class));
+		assertEquals(0, created.get());
+
+		EventSubscription<UpdateStateEvent> subscription = bus.subscribe(UpdateStateEvent.class,
+				event -> calls.add(event.state), EventPriority.NORMAL, false);
+
+		bus.publish(UpdateStateEvent.class, () -> {
+			created.incrementAndGet();
+			return new UpdateStateEvent("Y");
+		});
+
+		assertTrue(bus.hasSubscribers(UpdateStateEvent.class));
+		assertFalse(bus.hasSubscribers(CancellableEvent.class));
+		assertEquals(1, created.get());
+		assertEquals(Collections.singletonList("Y"), calls);
+
+		subscription.unsubscribe();
+		assertFalse(bus.hasSubscribers(UpdateStateEvent.class));
+
+		bus.subscribe(Event.class, event -> calls.add("any"), EventPriority.NORMAL, false);
+		assertTrue(bus.hasSubscribers(UpdateStateEvent.class));
+		assertTrue(bus.hasSubscribers(CancellableEvent.class));
+
+		// queries don't create dispatchers, so metrics don't get counters of unpublished types
+		EventBusMetrics metrics = new EventBusMetrics();
+		EventBus metricsBus = new SimpleEventBus(metrics);
+
+		assertFalse(metricsBus.hasSubscribers(UpdateStateEvent.class));
+
+		metricsBus.subscribe(Event.class, event -> calls.add("any"), EventPriority.NORMAL, false);
+		assertTrue(metricsBus.hasSubscribers(UpdateStateEvent.class));
+
+		assertTrue(metrics.snapshot().getPublishCounts().isEmpty());
+	}
+
+	@Test
+	public void testWeakSubscription() throws InterruptedException {
+		EventBusMetrics metrics = new EventBusMetrics();
+		AbstractEventBus bus = new SimpleEventBus(metrics);
+
+		StateListener strong = new StateListener();
+		bus.subscribeWeak(strong);
+
+		StateListener weak = new StateListener();
+		bus.subscribeWeak(weak);
+
+		WeakReference<StateListener> reference = new WeakReference<>(weak);
+
+		bus.publish(new UpdateStateEvent("X state"));
+		assertEquals("X state", weak.state);
+		assertEquals(2, metrics.snapshot().getSubscriptions().size());
+
+		weak = null;
+
+		for (int i = 0; i < 100 && reference.get() != null; i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+
+		assertNull(reference.get());
+
+		bus.publish(new UpdateStateEvent("Y state"));
+		assertEquals("Y state", strong.state);
+		assertEquals(1, metrics.snapshot().getSubscriptions().size());
+	}
+
+	@Test
+	public void testBatch() {
+		List<String> calls = new ArrayList<>();
+		EventNamespace plugin = new EventNamespace() {
+		};
+
+		EventSubscription<UpdateStateEvent> old = bus.subscribe(UpdateStateEvent.class,
+				event -> calls.add("old"), EventPriority.NORMAL, false);
+
+		bus.batch(tx -> {
+			for (int i = 0; i < 3; i++) {
+				String name = "plugin" + i;
+				tx.subscribe(plugin, UpdateStateEvent.class, event -> calls.add(name), EventPriority.NORMAL, false);
+			}
+
+			tx.subscribe(plugin, UpdateStateEvent.class, event -> calls.add("first"), EventPriority.LOWEST, false);
+
+			EventSubscription<UpdateStateEvent> dropped = tx.subscribe(plugin, UpdateStateEvent.class,
+					event -> calls.add("dropped"), EventPriority.NORMAL, false);
+
+			tx.unsubscribe(dropped);
+			tx.unsubscribe(old);
+
+			bus.publish(new UpdateStateEvent("X state"));
+			assertEquals(Collections.singletonList("old"), calls);
+		});
+
+		calls.clear();
+		bus.publish(new UpdateStateEvent("Y state"));
+		assertEquals(Arrays.asList("first", "plugin0", "plugin1", "plugin2"), calls);
+
+		bus.batch(tx -> tx.unsubscribeAll(plugin));
+
+		calls.clear();
+		bus.publish(new UpdateStateEvent("Z state"));
+		assertTrue(calls.isEmpty());
+	}
+
+	@Test
+	public void testMetrics() {
+		EventBusMetrics metrics = new EventBusMetrics();
+		EventBus bus = new SyncEventBus(metrics);
+
+		EventObjectSubscription subscription = bus.subscribe(new Object() {
+			@EventHandler
+			public void listen(UpdateStateEvent event) {
+				if (event.state == null) {
+					throw new IllegalStateException();
+				}
+			}
+		});
+
+		bus.publish(new UpdateStateEvent("X state"));
+		bus.publish(new UpdateStateEvent("Y state"));
+		bus.publish(new CancellableEvent("X value"));
+
+		assertThrows(IllegalStateException.class, () -> bus.publish(new UpdateStateEvent(null)));
+
+		EventBusMetrics.Snapshot snapshot = metrics.snapshot();
+
+		assertEquals(3, snapshot.getPublishCount(UpdateStateEvent.class));
+		assertEquals(1, snapshot.getPublishCount(CancellableEvent.class));
+		assertEquals(1, snapshot.getSubscriptions().size());
+
+		EventBusMetrics.SubscriptionSnapshot subscriptionSnapshot = snapshot.getSubscriptions().get(0);
+
+		assertEquals(3, subscriptionSnapshot.getInvocations());
+		assertEquals(1, subscriptionSnapshot.getFailures());
+		assertTrue(subscriptionSnapshot.getP50() <= subscriptionSnapshot.getP99());
+
+		subscription.unsubscribe();
+
+		assertTrue(metrics.snapshot().getSubscriptions().isEmpty());
+	}
+
+	@Test
+	public void testFaultPolicyErrors() {
+		EventFaultPolicy policy = new EventFaultPolicy(EventFaultPolicy.Action.SKIP, null, 2,
+				Duration.ofMillis(50), (subscription, event, durationNanos, error) -> {
+		});
+
+		EventBus bus = new SimpleEventBus(null, policy);
+
+		bus.subscribe(new Object() {
+			@EventHandler
+			public void listen(UpdateStateEvent event) {
+				if (event.state.equals("Bad state")) {
+					throw new IllegalStateException();
+				}
+
+				throw new StackOverflowError();
+			}
+		});
+
+		bus.publish(new UpdateStateEvent("Bad state"));
+		assertThrows(StackOverflowError.class, () -> bus.publish(new UpdateStateEvent("Fatal state")));
+	}
+
+	@Test
+	public void testFaultPolicyTrial() throws InterruptedException {
+		AtomicInteger recovered = new AtomicInteger();
+
+		EventFaultPolicy policy = new EventFaultPolicy(EventFaultPolicy.Action.QUARANTINE, null, 1,
+				Duration.ofMillis(50), new EventFaultPolicy.Reporter() {
+			@Override
+			public void violation(EventSubscription<?> subscription, Event event, long durationNanos,
+								  Throwable error) {
+			}
+
+			@Override
+			public void recovered(EventSubscription<?> subscription) {
+				recovered.incrementAndGet();
+			}
+		});
+
+		EventFaultPolicy.Guard guard = policy.newGuard();
+		Throwable error = new IllegalStateException();
+
+		// started before the quarantine
+		assertEquals(EventFaultPolicy.Guard.ACQUIRED, guard.tryAcquire());
+
+		assertEquals(EventFaultPolicy.Guard.ACQUIRED, guard.tryAcquire());
+		guard.complete(null, null, 0, error, false);
+		assertEquals(EventFaultPolicy.Guard.DENIED, guard.tryAcquire());
+
+		Thread.sleep(60);
+
+		assertEquals(EventFaultPolicy.Guard.TRIAL, guard.tryAcquire());
+		assertEquals(EventFaultPolicy.Guard.DENIED, guard.tryAcquire());
+
+		// stale failure neither ends the trial nor extends the quarantine
+		guard.complete(null, null, 0, error, false);
+		assertEquals(EventFaultPolicy.Guard.DENIED, guard.tryAcquire());
+
+		guard.complete(null, null, 0, null, true);
+		assertEquals(1, recovered.get());
+		assertEquals(EventFaultPolicy.Guard.ACQUIRED, guard.tryAcquire());
+	}
+
+	@Test
+	public void testFaultPolicy() throws InterruptedException {
+		AtomicInteger violations = new AtomicInteger();
+		AtomicInteger quarantined = new AtomicInteger();
+
+		EventFaultPolicy policy = new EventFaultPolicy(EventFaultPolicy.Action.QUARANTINE, null, 2,
+				Duration.ofMillis(50), new EventFaultPolicy.Reporter() {
+			@Override
+			public void violation(EventSubscription<?> subscription, Event event, long durationNanos,
+								  Throwable error) {
+				violations.incrementAndGet();
+			}
+
+			@Override
+			public void quarantined(EventSubscription<?> subscription) {
+				quarantined.incrementAndGet();
+			}
+		});
+
+		EventBus bus = new SimpleEventBus(null, policy);
+
+		AtomicInteger calls = new AtomicInteger();
+		AtomicReference<String> monitor = new AtomicReference<>();
+
+		bus.subscribe(new Object() {
+			@EventHandler
+			public void listen(UpdateStateEvent event) {
+				calls.incrementAndGet();
+
+				if (event.state.equals("Bad state")) {
+					throw new IllegalStateException();
+				}
+			}
+
+			@EventHandler(EventPriority.MONITOR)
+			public void monitor(UpdateStateEvent event) {
+				monitor.set(event.state);
+			}
+		});
+
+		bus.publish(new UpdateStateEvent("Bad state"));
+		assertEquals("Bad state", monitor.get());
+
+		bus.publish(new UpdateStateEvent("Bad state"));
+		assertEquals(2, violations.get());
+		assertEquals(1, quarantined.get());
+
+		bus.publish(new UpdateStateEvent("Good state"));
+		assertEquals(2, calls.get());
+		assertEquals("Good state", monitor.get());
+
+		Thread.sleep(60);
+
+		bus.publish(new UpdateStateEvent("Good state"));
+		bus.publish(new UpdateStateEvent("Good state"));
+		assertEquals(4, calls.get());
+	}
+
+	@Test
+	public void testFlightRecorder() throws IOException {
+		bus.subscribe(new StateListener());
+
+		Path file = Files.createTempFile("ef4j", ".jfr");
+
+		try (Recording recording = new Recording()) {
+			recording.enable("com.github.lero4ka16.ef4j.Publish");
+			recording.enable("com.github.lero4ka16.ef4j.Handle").withThreshold(Duration.ZERO);
+			recording.enable("com.github.lero4ka16.ef4j.AsyncCompletion");
+			recording.start();
+
+			bus.publish(new UpdateStateEvent("X state"));
+			bus.publish(new AsyncUpdateStateEvent("X state", event -> {
+			}));
+
+			recording.stop();
+			recording.dump(file);
+
+			List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+
+			RecordedEvent publish = events.stream()
+					.filter(event -> event.getEventType().getName().equals("com.github.lero4ka16.ef4j.Publish"))
+					.filter(event -> event.getClass("eventType").getName().equals(UpdateStateEvent.class.getName()))
+					.findFirst()
+					.orElseThrow(AssertionError::new);
+
+			assertEquals(1, publish.getInt("subscribers"));
+
+			assertTrue(events.stream().anyMatch(event -> event.getEventType().getName()
+					.equals("com.github.lero4ka16.ef4j.Handle")));
+			assertTrue(events.stream().anyMatch(event -> event.getEventType().getName()
+					.equals("com.github.lero4ka16.ef4j.AsyncCompletion")));
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	private static class BrokenListener {
+
+		private String state;
+
+		@EventHandler
+		public void listen(UpdateStateEvent event) {
+			this.state = event.state;
+		}
+
+	}
+
+	/**
+	 * Registrar of {@link BrokenListener}, that can't be instantiated
+	 */
+	public static final class BrokenListener$$EventRegistrar implements EventRegistrar<BrokenListener> {
+
+		private BrokenListener$$EventRegistrar() {
+		}
+
+		@Override
+		public void register(Handlers<BrokenListener> handlers) {
+			throw new UnsupportedOperationException();
+		}
+
+	}
+
 	public static class CancellableEvent extends Event implements Cancellable {
 
 		private final String value;
@@ -181,6 +1124,59 @@ public class EventBusTest {
 		}
 	}
 
+	public static class PooledEvent extends Event implements Recyclable {
+
+		private String value;
+
+		public String getValue() {
+			ensureNotRecycled();
+			return value;
+		}
+
+		public void setValue(String value) {
+			this.value = value;
+		}
+
+		@Override
+		public void recycle() {
+			value = null;
+		}
+
+	}
+
+	public static class PositionEvent extends Event implements Coalescable, Routable {
+
+		private final String entity;
+		private final int position;
+
+		public PositionEvent(String entity, int position) {
+			this.entity = entity;
+			this.position = position;
+		}
+
+		@Override
+		public Object getCoalescingKey() {
+			return entity;
+		}
+
+		@Override
+		public Object getRoutingKey() {
+			return entity;
+		}
+
+	}
+
+	public static class StateListener {
+
+		private String state;
+
+		@EventHandler
+		public void listen(UpdateStateEvent event) {
+			state = event.state;
+		}
+
+	}
+
 	public static class UpdateStateEvent extends Event {
 
 		private final String state;
@@ -189,6 +1185,10 @@ public class EventBusTest {
 			this.state = state;
 		}
 
+		public String getState() {
+			return state;
+		}
+
 	}
 
 
@@ -0,0 +1,84 @@
+/*
+ *    Copyright 2021 Lero4ka16
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.github.lero4ka16.ef4j;
+
+import com.github.lero4ka16.ef4j.EventBusTest.UpdateStateEvent;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+/**
+ * @author lero4ka16
+ */
+public class EventTracerTest {
+
+	@Test
+	public void testWithoutFlightRecorder() throws IOException, InterruptedException {
+		assumeFalse(System.getProperty("java.specification.version").startsWith("1."),
+				"Modules are not supported");
+
+		Process process = new ProcessBuilder(
+				System.getProperty("java.home") + File.separator + "bin" + File.separator + "java",
+				"--limit-modules", "java.base,java.logging",
+				"-cp", System.getProperty("java.class.path"),
+				WithoutFlightRecorder.class.getName()
+		).redirectErrorStream(true).start();
+
+		String output = read(process.getInputStream());
+
+		assertTrue(process.waitFor(30, TimeUnit.SECONDS));
+		assertEquals(0, process.exitValue(), output);
+		assertEquals(EventTracer.Noop.class.getName() + " X state", output.trim());
+	}
+
+	private static String read(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1024];
+
+		for (int read; (read = in.read(buffer)) != -1; ) {
+			out.write(buffer, 0, read);
+		}
+
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	public static final class WithoutFlightRecorder {
+
+		public static void main(String[] args) {
+			EventBus bus = new SimpleEventBus();
+			AtomicReference<String> state = new AtomicReference<>();
+
+			bus.subscribe(UpdateStateEvent.class, event -> state.set(event.getState()), EventPriority.NORMAL, false);
+			bus.publish(new UpdateStateEvent("X state"));
+
+			System.out.println(EventTracer.INSTANCE.getClass().getName() + " " + state.get());
+		}
+
+	}
+
+}
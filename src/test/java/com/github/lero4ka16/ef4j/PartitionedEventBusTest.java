@@ -0,0 +1,237 @@
+/*
+ *    Copyright 2021 Lero4ka16
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.github.lero4ka16.ef4j;
+
+import com.github.lero4ka16.ef4j.EventBusTest.UpdateStateEvent;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author lero4ka16
+ */
+public class PartitionedEventBusTest {
+
+	@Test
+	public void testOrderByKey() throws InterruptedException {
+		PartitionedEventBus bus = new PartitionedEventBus(4);
+
+		Map<String, List<Integer>> positions = new ConcurrentHashMap<>();
+		Set<Thread> threads = ConcurrentHashMap.newKeySet();
+
+		bus.subscribe(new Object() {
+			@EventHandler
+			public void listen(KeyedPositionEvent event) {
+				threads.add(Thread.currentThread());
+
+				// each key is handled by the single loop
+				positions.computeIfAbsent(event.getEntity(), $ -> new ArrayList<>()).add(event.getPosition());
+			}
+		});
+
+		Thread[] publishers = new Thread[8];
+
+		for (int i = 0; i < publishers.length; i++) {
+			String entity = "Entity " + i;
+
+			publishers[i] = new Thread(() -> {
+				for (int j = 0; j < 10000; j++) {
+					bus.publish(new KeyedPositionEvent(entity, j));
+				}
+			});
+
+			publishers[i].start();
+		}
+
+		for (Thread publisher : publishers) {
+			publisher.join();
+		}
+
+		bus.close();
+
+		List<Integer> expected = new ArrayList<>();
+
+		for (int j = 0; j < 10000; j++) {
+			expected.add(j);
+		}
+
+		assertEquals(publishers.length, positions.size());
+
+		for (List<Integer> list : positions.values()) {
+			assertEquals(expected, list);
+		}
+
+		assertTrue(threads.size() > 1);
+		assertThrows(IllegalStateException.class, () -> bus.publish(new UpdateStateEvent("Closed")));
+	}
+
+	@Test
+	public void testOrderByType() throws InterruptedException {
+		PartitionedEventBus bus = new PartitionedEventBus(4);
+
+		List<String> states = new ArrayList<>();
+
+		bus.subscribe(new Object() {
+			@EventHandler
+			public void listen(UpdateStateEvent event) {
+				states.add(event.getState());
+			}
+		});
+
+		List<String> expected = new ArrayList<>();
+
+		for (int i = 0; i < 1000; i++) {
+			bus.publish(new UpdateStateEvent("State " + i));
+			expected.add("State " + i);
+		}
+
+		bus.close();
+
+		assertEquals(expected, states);
+	}
+
+	@Test
+	public void testCloseWhilePublishing() throws InterruptedException {
+		PartitionedEventBus bus = new PartitionedEventBus(2);
+
+		AtomicInteger handled = new AtomicInteger();
+		AtomicInteger published = new AtomicInteger();
+
+		bus.subscribe(new Object() {
+			@EventHandler
+			public void listen(KeyedPositionEvent event) {
+				handled.incrementAndGet();
+			}
+		});
+
+		Thread[] publishers = new Thread[4];
+
+		for (int i = 0; i < publishers.length; i++) {
+			String entity = "Entity " + i;
+
+			publishers[i] = new Thread(() -> {
+				try {
+					for (int j = 0; ; j++) {
+						bus.publish(new KeyedPositionEvent(entity, j));
+						published.incrementAndGet();
+					}
+				} catch (IllegalStateException ignored) {
+					// closed
+				}
+			});
+
+			publishers[i].start();
+		}
+
+		Thread.sleep(50);
+		bus.close();
+
+		for (Thread publisher : publishers) {
+			publisher.join();
+		}
+
+		// every accepted event is handled
+		assertEquals(published.get(), handled.get());
+	}
+
+	@Test
+	public void testCloseFromHandler() throws InterruptedException {
+		PartitionedEventBus bus = new PartitionedEventBus(2);
+
+		AtomicReference<Thread> loop = new AtomicReference<>();
+		CountDownLatch latch = new CountDownLatch(1);
+
+		bus.subscribe(new Object() {
+			@EventHandler
+			public void listen(UpdateStateEvent event) {
+				bus.close();
+
+				loop.set(Thread.currentThread());
+				latch.countDown();
+			}
+		});
+
+		bus.publish(new UpdateStateEvent("Close"));
+
+		assertTrue(latch.await(1, TimeUnit.SECONDS));
+
+		loop.get().join(1000);
+		assertFalse(loop.get().isAlive());
+	}
+
+	@Test
+	public void testNullKey() throws InterruptedException {
+		PartitionedEventBus bus = new PartitionedEventBus(2);
+
+		List<Integer> positions = new ArrayList<>();
+
+		bus.subscribe(new Object() {
+			@EventHandler
+			public void listen(KeyedPositionEvent event) {
+				positions.add(event.getPosition());
+			}
+		});
+
+		for (int i = 0; i < 100; i++) {
+			bus.publish(new KeyedPositionEvent(null, i));
+		}
+
+		bus.close();
+
+		assertEquals(100, positions.size());
+	}
+
+	public static class KeyedPositionEvent extends Event implements Partitionable {
+
+		private final String entity;
+		private final int position;
+
+		public KeyedPositionEvent(String entity, int position) {
+			this.entity = entity;
+			this.position = position;
+		}
+
+		public String getEntity() {
+			return entity;
+		}
+
+		public int getPosition() {
+			return position;
+		}
+
+		@Override
+		public Object getPartitionKey() {
+			return entity;
+		}
+
+	}
+
+}
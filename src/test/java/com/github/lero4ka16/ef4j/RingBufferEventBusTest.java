@@ -0,0 +1,211 @@
+/*
+ *    Copyright 2021 Lero4ka16
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package com.github.lero4ka16.ef4j;
+
+import com.github.lero4ka16.ef4j.EventBusTest.UpdateStateEvent;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author lero4ka16
+ */
+public class RingBufferEventBusTest {
+
+	@Test
+	public void testOrder() throws InterruptedException {
+		RingBufferEventBus bus = new RingBufferEventBus(8);
+
+		List<String> states = new ArrayList<>();
+
+		bus.subscribe(new Object() {
+			@EventHandler
+			public void listen(UpdateStateEvent event) {
+				states.add(event.getState());
+			}
+		});
+
+		List<String> expected = new ArrayList<>();
+
+		for (int i = 0; i < 1000; i++) {
+			bus.publish(new UpdateStateEvent("State " + i));
+			expected.add("State " + i);
+		}
+
+		bus.close();
+
+		assertEquals(expected, states);
+		assertThrows(IllegalStateException.class, () -> bus.publish(new UpdateStateEvent("Closed")));
+	}
+
+	@Test
+	public void testPublishFromConsumer() throws InterruptedException {
+		RingBufferEventBus bus = new RingBufferEventBus(2);
+
+		CountDownLatch latch = new CountDownLatch(1);
+
+		List<String> states = new ArrayList<>();
+		AtomicInteger rejected = new AtomicInteger();
+
+		bus.subscribe(new Object() {
+			@EventHandler
+			public void listen(UpdateStateEvent event) {
+				states.add(event.getState());
+
+				if (!event.getState().equals("Start")) {
+					return;
+				}
+
+				for (int i = 0; i < 4; i++) {
+					try {
+						bus.publish(new UpdateStateEvent("Child " + i));
+					} catch (IllegalStateException e) {
+						rejected.incrementAndGet();
+					}
+				}
+
+				latch.countDown();
+			}
+		});
+
+		bus.publish(new UpdateStateEvent("Start"));
+
+		assertTrue(latch.await(1, TimeUnit.SECONDS));
+		bus.close();
+
+		assertEquals(Arrays.asList("Start", "Child 0", "Child 1"), states);
+		assertEquals(2, rejected.get());
+	}
+
+	@Test
+	public void testCloseFromConsumer() throws InterruptedException {
+		RingBufferEventBus bus = new RingBufferEventBus(4);
+
+		AtomicReference<Thread> consumer = new AtomicReference<>();
+		CountDownLatch latch = new CountDownLatch(1);
+
+		bus.subscribe(new Object() {
+			@EventHandler
+			public void listen(UpdateStateEvent event) {
+				bus.close();
+
+				consumer.set(Thread.currentThread());
+				latch.countDown();
+			}
+		});
+
+		bus.publish(new UpdateStateEvent("Close"));
+
+		assertTrue(latch.await(1, TimeUnit.SECONDS));
+
+		consumer.get().join(1000);
+		assertFalse(consumer.get().isAlive());
+	}
+
+	@Test
+	public void testCloseWhilePublishing() throws InterruptedException {
+		RingBufferEventBus bus = new RingBufferEventBus(16, 2);
+
+		AtomicInteger handled = new AtomicInteger();
+		AtomicInteger published = new AtomicInteger();
+
+		bus.subscribe(new Object() {
+			@EventHandler
+			public void listen(UpdateStateEvent event) {
+				handled.incrementAndGet();
+			}
+		});
+
+		Thread[] publishers = new Thread[4];
+
+		for (int i = 0; i < publishers.length; i++) {
+			publishers[i] = new Thread(() -> {
+				try {
+					while (true) {
+						bus.publish(new UpdateStateEvent("State"));
+						published.incrementAndGet();
+					}
+				} catch (IllegalStateException ignored) {
+					// closed
+				}
+			});
+
+			publishers[i].start();
+		}
+
+		Thread.sleep(50);
+		bus.close();
+
+		for (Thread publisher : publishers) {
+			publisher.join();
+		}
+
+		// every accepted event is handled
+		assertEquals(published.get(), handled.get());
+	}
+
+	@Test
+	public void testConsumers() throws InterruptedException {
+		RingBufferEventBus bus = new RingBufferEventBus(16, 4);
+
+		AtomicInteger counter = new AtomicInteger();
+		List<String> states = Collections.synchronizedList(new ArrayList<>());
+
+		bus.subscribe(new Object() {
+			@EventHandler
+			public void listen(UpdateStateEvent event) {
+				counter.incrementAndGet();
+				states.add(event.getState());
+			}
+		});
+
+		Thread[] publishers = new Thread[4];
+
+		for (int i = 0; i < publishers.length; i++) {
+			publishers[i] = new Thread(() -> {
+				for (int j = 0; j < 10000; j++) {
+					bus.publish(new UpdateStateEvent("State"));
+				}
+			});
+
+			publishers[i].start();
+		}
+
+		for (Thread publisher : publishers) {
+			publisher.join();
+		}
+
+		bus.close();
+
+		assertEquals(40000, counter.get());
+		assertEquals(40000, states.size());
+	}
+
+}